@@ -62,6 +62,8 @@ import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.net.URI;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Entry point to API
@@ -121,6 +123,13 @@ public class JAXBContextImpl extends JAXBContext {
   private final LinkedHashMap<Class,JAXBElementSkeleton> _jaxbElementSkeletons 
     = new LinkedHashMap<Class,JAXBElementSkeleton>();
 
+  // object class to its skeleton, including subclasses of bound classes
+  private final ConcurrentHashMap<Class,ClassSkeleton> _objectSkeletonCache
+    = new ConcurrentHashMap<Class,ClassSkeleton>();
+
+  // incremented whenever a skeleton is added, invalidating lookups in flight
+  private final AtomicInteger _skeletonGeneration = new AtomicInteger();
+
   private final HashMap<QName,ClassSkeleton> _roots 
     = new HashMap<QName,ClassSkeleton>();
   private final HashMap<QName,ClassSkeleton> _types 
@@ -364,6 +373,7 @@ public class JAXBContextImpl extends JAXBContext {
     if (Object.class.equals(c)) {
       skeleton = new AnyTypeSkeleton(this);
       _classSkeletons.put(c, skeleton);
+      clearObjectSkeletonCache();
     }
     else {
       // XXX
@@ -379,6 +389,7 @@ public class JAXBContextImpl extends JAXBContext {
 
       // Breadcrumb to prevent problems with recursion
       _classSkeletons.put(c, skeleton); 
+      clearObjectSkeletonCache();
 
       _pendingSkeletons.add(c);
 
@@ -439,8 +450,40 @@ public class JAXBContextImpl extends JAXBContext {
       
       return skeleton;
     }
-    else
-      return findSkeletonForClass(obj.getClass(), _classSkeletons);
+    else {
+      Class cl = obj.getClass();
+
+      ClassSkeleton skeleton = _objectSkeletonCache.get(cl);
+
+      if (skeleton == null) {
+        int generation = _skeletonGeneration.get();
+
+        skeleton = findSkeletonForClass(cl, _classSkeletons);
+
+        if (skeleton != null && generation == _skeletonGeneration.get()) {
+          _objectSkeletonCache.put(cl, skeleton);
+
+          // a skeleton added during the put may have cleared the cache
+          // before the stale entry was stored
+          if (generation != _skeletonGeneration.get())
+            _objectSkeletonCache.remove(cl);
+        }
+      }
+
+      return skeleton;
+    }
+  }
+
+  /**
+   * Invalidates the cached object skeletons after a skeleton is added.
+   * The generation is incremented before the clear, so a lookup that
+   * started earlier either stores its entry before the clear or sees
+   * the new generation and drops its entry.
+   */
+  private void clearObjectSkeletonCache()
+  {
+    _skeletonGeneration.incrementAndGet();
+    _objectSkeletonCache.clear();
   }
 
   /**
@@ -122,6 +122,10 @@ public class ClassSkeleton<C> {
   private ArrayList<XmlMapping> _elementMappings
     = new ArrayList<XmlMapping>();
 
+  // fixed copies of the mappings for marshalling, set by postProcess()
+  private XmlMapping []_attributeMappingArray;
+  private XmlMapping []_elementMappingArray;
+
   private AnyElementMapping _anyElementMapping;
   private AnyAttributeMapping _anyAttributeMapping;
 
@@ -514,6 +518,14 @@ public class ClassSkeleton<C> {
 
     for (int i = 0; i < _elementMappings.size(); i++)
       _elementMappings.get(i).putQNames(_elementQNameToMappingMap);
+
+    _attributeMappingArray = toArray(_attributeMappings);
+    _elementMappingArray = toArray(_elementMappings);
+  }
+
+  private static XmlMapping []toArray(ArrayList<XmlMapping> mappings)
+  {
+    return mappings.toArray(new XmlMapping[mappings.size()]);
   }
 
   /**
@@ -848,11 +860,24 @@ public class ClassSkeleton<C> {
             attributes.get(i).write(m, out, obj);
         }
 
-        for (XmlMapping mapping : _attributeMappings)
-          mapping.write(m, out, obj);
+        XmlMapping []attributeMappings = _attributeMappingArray;
+        XmlMapping []elementMappings = _elementMappingArray;
 
-        for (XmlMapping mapping : _elementMappings)
-          mapping.write(m, out, obj);
+        if (elementMappings != null) {
+          for (int i = 0; i < attributeMappings.length; i++)
+            attributeMappings[i].write(m, out, obj);
+
+          for (int i = 0; i < elementMappings.length; i++)
+            elementMappings[i].write(m, out, obj);
+        }
+        else {
+          // skeletons created after the context was built
+          for (XmlMapping mapping : _attributeMappings)
+            mapping.write(m, out, obj);
+
+          for (XmlMapping mapping : _elementMappings)
+            mapping.write(m, out, obj);
+        }
 
         if (_anyElementMapping != null) // XXX ordering!
           _anyElementMapping.write(m, out, obj);
@@ -165,7 +165,6 @@ class InjectScanManager implements ScanListener {
   public boolean isRootScannable(Path root, String packageRoot)
   {
     ScanRootContext context = _scanRootMap.get(root);
-    List<Path> beansXmlOverride = _injectManager.getBeansXmlOverride(root);
 
     Path scanRoot = root;
 
@@ -173,19 +172,8 @@ class InjectScanManager implements ScanListener {
       scanRoot = scanRoot.lookup(packageRoot.replace('.', '/'));
     }
     
-    if (beansXmlOverride == null) {
-      // TODO Should resin-beans.xml be included in this check?
-      if (packageRoot != null) {
-        if (! scanRoot.lookup("beans.xml").canRead()
-            && ! scanRoot.lookup("META-INF/beans.xml").canRead()) {
-          return false;
-        }
-      } else if (! (root.lookup("META-INF/beans.xml").canRead() 
-                    || (root.getFullPath().endsWith("WEB-INF/classes/")
-                        && root.lookup("../beans.xml").canRead()))) {
-        return false;
-      }
-    }
+    if (! isBeansRoot(root, scanRoot, packageRoot))
+      return false;
 
     if (context == null) {
       context = new ScanRootContext(scanRoot, packageRoot);
@@ -204,6 +192,44 @@ class InjectScanManager implements ScanListener {
     }
   }
 
+  @Override
+  public boolean isRootScanCandidate(Path root, String packageRoot)
+  {
+    Path scanRoot = root;
+
+    if (packageRoot != null) {
+      scanRoot = scanRoot.lookup(packageRoot.replace('.', '/'));
+    }
+
+    if (! isBeansRoot(root, scanRoot, packageRoot))
+      return false;
+
+    ScanRootContext context = _scanRootMap.get(root);
+
+    return context == null || ! context.isScanComplete();
+  }
+
+  private boolean isBeansRoot(Path root, Path scanRoot, String packageRoot)
+  {
+    List<Path> beansXmlOverride = _injectManager.getBeansXmlOverride(root);
+
+    if (beansXmlOverride == null) {
+      // TODO Should resin-beans.xml be included in this check?
+      if (packageRoot != null) {
+        if (! scanRoot.lookup("beans.xml").canRead()
+            && ! scanRoot.lookup("META-INF/beans.xml").canRead()) {
+          return false;
+        }
+      } else if (! (root.lookup("META-INF/beans.xml").canRead() 
+                    || (root.getFullPath().endsWith("WEB-INF/classes/")
+                        && root.lookup("../beans.xml").canRead()))) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
   /**
    * Checks if the class can be a simple class
    */
@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 1998-2012 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Resin(R) Open Source
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Resin Open Source is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2
+ * as published by the Free Software Foundation.
+ *
+ * Resin Open Source is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Resin Open Source; if not, write to the
+ *
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ *
+ * @author Scott Ferguson
+ */
+
+
+package com.caucho.env.meter;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.caucho.util.CurrentTime;
+
+/**
+ * Latency histogram for percentile meters, e.g. the 99% request time.
+ *
+ * Times are recorded in microseconds into log-linear buckets, eight
+ * sub-buckets per power of two, giving about 12% precision. Recording
+ * is a single atomic increment on a per-thread stripe, so the request
+ * path doesn't contend or allocate. Each sample period merges and
+ * clears the stripes and calculates the percentiles for that period.
+ */
+public final class HistogramMeter extends AbstractMeter
+  implements ActiveTimeSensor
+{
+  private static final int SUB_BITS = 3;
+  private static final int SUB_COUNT = 1 << SUB_BITS;
+  private static final int MAX_BITS = 40;
+
+  private static final int BUCKET_COUNT = (MAX_BITS - SUB_BITS + 2) * SUB_COUNT;
+
+  private static final int STRIPE_COUNT = 16;
+
+  // minimum time between merges, so all the probes share one merge
+  private static final long MERGE_INTERVAL = 1000L;
+
+  private final AtomicLongArray []_stripes;
+
+  private final Object _lock = new Object();
+
+  private final long []_mergeBuckets = new long[BUCKET_COUNT];
+  private long _mergeCount;
+  private long _lastMergeTime;
+
+  private double _value;
+
+  public HistogramMeter(String name)
+  {
+    super(name);
+
+    _stripes = new AtomicLongArray[STRIPE_COUNT];
+
+    for (int i = 0; i < STRIPE_COUNT; i++) {
+      _stripes[i] = new AtomicLongArray(BUCKET_COUNT);
+    }
+  }
+
+  @Override
+  public final long start()
+  {
+    return System.nanoTime();
+  }
+
+  @Override
+  public final long end(long startTime)
+  {
+    long micros = (System.nanoTime() - startTime) / 1000;
+
+    add(micros);
+
+    return micros / 1000;
+  }
+
+  /**
+   * Adds a time in microseconds.
+   */
+  public final void add(long micros)
+  {
+    int stripe = (int) Thread.currentThread().getId() & (STRIPE_COUNT - 1);
+
+    _stripes[stripe].incrementAndGet(getBucket(micros));
+  }
+
+  public AbstractMeter createPercentile(String name, double percentile)
+  {
+    return new PercentileProbe(name, percentile);
+  }
+
+  @Override
+  public final void sample()
+  {
+    _value = samplePercentile(0.5);
+  }
+
+  @Override
+  public final double calculate()
+  {
+    return _value;
+  }
+
+  /**
+   * Returns the percentile time in milliseconds for the current period.
+   */
+  public final double samplePercentile(double percentile)
+  {
+    synchronized (_lock) {
+      merge();
+
+      if (_mergeCount == 0)
+        return 0;
+
+      long limit = (long) Math.ceil(percentile * _mergeCount);
+      long sum = 0;
+
+      for (int i = 0; i < BUCKET_COUNT; i++) {
+        sum += _mergeBuckets[i];
+
+        if (limit <= sum)
+          return getBucketValue(i) / 1000.0;
+      }
+
+      return getBucketValue(BUCKET_COUNT - 1) / 1000.0;
+    }
+  }
+
+  private void merge()
+  {
+    long now = CurrentTime.getCurrentTime();
+
+    if (now < _lastMergeTime + MERGE_INTERVAL)
+      return;
+
+    _lastMergeTime = now;
+
+    long []buckets = _mergeBuckets;
+    long count = 0;
+
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      long value = 0;
+
+      for (AtomicLongArray stripe : _stripes) {
+        if (stripe.get(i) != 0)
+          value += stripe.getAndSet(i, 0);
+      }
+
+      buckets[i] = value;
+      count += value;
+    }
+
+    _mergeCount = count;
+  }
+
+  private static int getBucket(long value)
+  {
+    if (value < SUB_COUNT)
+      return value < 0 ? 0 : (int) value;
+
+    int bits = 63 - Long.numberOfLeadingZeros(value);
+
+    if (MAX_BITS < bits)
+      return BUCKET_COUNT - 1;
+
+    int shift = bits - SUB_BITS;
+    int sub = (int) (value >>> shift) & (SUB_COUNT - 1);
+
+    return (shift + 1) * SUB_COUNT + sub;
+  }
+
+  /**
+   * Returns the upper bound of the bucket.
+   */
+  private static long getBucketValue(int bucket)
+  {
+    if (bucket < SUB_COUNT)
+      return bucket;
+
+    int shift = bucket / SUB_COUNT - 1;
+    int sub = bucket % SUB_COUNT;
+
+    return ((SUB_COUNT + sub + 1L) << shift) - 1;
+  }
+
+  class PercentileProbe extends AbstractMeter {
+    private final double _percentile;
+
+    private double _value;
+
+    PercentileProbe(String name, double percentile)
+    {
+      super(name);
+
+      _percentile = percentile;
+    }
+
+    @Override
+    public void sample()
+    {
+      _value = samplePercentile(_percentile);
+    }
+
+    @Override
+    public double calculate()
+    {
+      return _value;
+    }
+  }
+}
@@ -331,6 +331,35 @@ public class MeterService extends AbstractResinSubSystem {
     return (ActiveTimeMeter) meter;
   }
 
+  /**
+   * A HistogramMeter reports latency percentiles, e.g. the 99% request
+   * time, for each sample period.
+   */
+  public static HistogramMeter createHistogramMeter(String name)
+  {
+    return create().createHistogramMeterImpl(name);
+  }
+
+  private HistogramMeter createHistogramMeterImpl(String baseName)
+  {
+    String name = baseName + " Time 50%";
+
+    AbstractMeter meter = _meterMap.get(name);
+
+    if (meter == null) {
+      meter = createMeter(new HistogramMeter(name));
+
+      HistogramMeter histogramMeter = (HistogramMeter) meter;
+
+      createMeter(histogramMeter.createPercentile(baseName + " Time 99%",
+                                                  0.99));
+      createMeter(histogramMeter.createPercentile(baseName + " Time 99.9%",
+                                                  0.999));
+    }
+
+    return (HistogramMeter) meter;
+  }
+
   /**
    * An ActiveMeter counts the number of an active resource, e.g. the
    * number of active connections.
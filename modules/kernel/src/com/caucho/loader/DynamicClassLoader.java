@@ -550,6 +550,16 @@ public class DynamicClassLoader extends java.net.URLClassLoader
     }
 
     addURL(root);
+
+    clearClassMissCache();
+  }
+
+  /**
+   * Called after a jar or root is added, so classes cached as missing
+   * are searched again.
+   */
+  protected void clearClassMissCache()
+  {
   }
 
   /**
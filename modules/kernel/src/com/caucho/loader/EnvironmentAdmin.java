@@ -65,6 +65,28 @@ public class EnvironmentAdmin extends AbstractManagedObject
       return null;
   }
 
+  @Override
+  public long getLookupCacheHitCountTotal()
+  {
+    EnvironmentClassLoader loader = _loaderRef.get();
+
+    if (loader != null)
+      return loader.getLookupCacheHitCount();
+    else
+      return 0;
+  }
+
+  @Override
+  public long getLookupCacheMissCountTotal()
+  {
+    EnvironmentClassLoader loader = _loaderRef.get();
+
+    if (loader != null)
+      return loader.getLookupCacheMissCount();
+    else
+      return 0;
+  }
+
   void register()
   {
     if (! CurrentTime.isTest())
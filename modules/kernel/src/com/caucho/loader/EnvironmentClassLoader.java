@@ -39,6 +39,7 @@ import java.util.ArrayList;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -102,6 +103,13 @@ public class EnvironmentClassLoader extends DynamicClassLoader
   
   private LruCache<String,ResourceEntry> _resourceCacheMap
     = new LruCache<String,ResourceEntry>(256);
+  
+  // classes not found by this environment's loaders
+  private LruCache<String,ResourceEntry> _classMissCacheMap
+    = new LruCache<String,ResourceEntry>(1024);
+  
+  private final AtomicLong _lookupCacheHitCount = new AtomicLong();
+  private final AtomicLong _lookupCacheMissCount = new AtomicLong();
 
   private WeakStopListener _stopListener;
 
@@ -347,11 +355,16 @@ public class EnvironmentClassLoader extends DynamicClassLoader
     
     if (entry == null || entry.isModified()) {
       URL resource = super.getResource(name);
+
+      if (resource == null)
+        _lookupCacheMissCount.incrementAndGet();
     
       entry = new ResourceEntry(resource);
     
       _resourceCacheMap.put(name, entry);
     }
+    else
+      _lookupCacheHitCount.incrementAndGet();
     
     return entry.getResource();
   }
@@ -366,14 +379,84 @@ public class EnvironmentClassLoader extends DynamicClassLoader
     
     if (entry == null || entry.isModified()) {
       URL resource = super.getResource(name);
+
+      if (resource == null)
+        _lookupCacheMissCount.incrementAndGet();
     
       entry = new ResourceEntry(resource);
     
       _resourceCacheMap.put(name, entry);
     }
+    else
+      _lookupCacheHitCount.incrementAndGet();
     
     return entry.getResourceAsStream();
   }
+
+  /**
+   * Overrides findClassImpl to cache classes missing from the loaders,
+   * so repeated probes for optional classes skip the loader walk.
+   */
+  @Override
+  public Class<?> findClassImpl(String name)
+    throws ClassNotFoundException
+  {
+    ResourceEntry missEntry = _classMissCacheMap.get(name);
+    
+    if (missEntry != null && ! missEntry.isModified()) {
+      _lookupCacheHitCount.incrementAndGet();
+      
+      return null;
+    }
+    
+    Class<?> cl = super.findClassImpl(name);
+    
+    if (cl == null) {
+      _lookupCacheMissCount.incrementAndGet();
+      
+      _classMissCacheMap.put(name, new ResourceEntry(null));
+    }
+    
+    return cl;
+  }
+
+  /**
+   * Clears the class miss cache when a loader is added.
+   */
+  @Override
+  public void addLoader(Loader loader, int offset)
+  {
+    super.addLoader(loader, offset);
+    
+    clearClassMissCache();
+  }
+
+  /**
+   * Clears the class miss cache after a jar or root is added.
+   */
+  @Override
+  protected void clearClassMissCache()
+  {
+    _classMissCacheMap.clear();
+  }
+  
+  /**
+   * Returns the number of class and resource lookups served from
+   * the cache.
+   */
+  public long getLookupCacheHitCount()
+  {
+    return _lookupCacheHitCount.get();
+  }
+  
+  /**
+   * Returns the number of class and resource lookups which searched
+   * the loaders without finding a match.
+   */
+  public long getLookupCacheMissCount()
+  {
+    return _lookupCacheMissCount.get();
+  }
   
   //
   // resource aliases
@@ -897,6 +980,15 @@ public class EnvironmentClassLoader extends DynamicClassLoader
 
         ScanManager scanManager = new ScanManager(_scanListeners);
 
+        ArrayList<URL> urlList = new ArrayList<URL>();
+        ArrayList<String> packageList = new ArrayList<String>();
+        for (int i = 0; i < rootListSize; i++) {
+          urlList.add(rootList.get(i).getUrl());
+          packageList.add(rootList.get(i).getPackageName());
+        }
+
+        scanManager.preload(urlList, packageList);
+
         for (int i = 0; i < rootListSize; i++) {
           ScanRoot root = rootList.get(i);
 
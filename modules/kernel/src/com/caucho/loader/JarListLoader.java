@@ -29,13 +29,11 @@
 
 package com.caucho.loader;
 
-import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Vector;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.zip.ZipEntry;
 
 import com.caucho.config.ConfigException;
 import com.caucho.make.DependencyContainer;
@@ -173,6 +171,9 @@ abstract public class JarListLoader extends Loader implements Dependency {
     if (_pathMap != null) {
       _pathMap.scan(jar, jarEntry);
     }
+
+    if (getClassLoader() != null)
+      getClassLoader().clearClassMissCache();
   }
 
   /**
@@ -221,18 +222,12 @@ abstract public class JarListLoader extends Loader implements Dependency {
         JarPath path = jarEntry.getJarPath();
         Jar jar = path.getJar();
         
-        try {
-          ZipEntry zipEntry = jar.getZipEntry(pathName);
-
-        // if (filePath.canRead() && filePath.getLength() > 0) {
-        
-          if (zipEntry != null && zipEntry.getSize() > 0) {
-            Path filePath = path.lookup(pathName);
+        // the jar's central directory index answers misses without
+        // opening the zip file
+        if (jar.getLength(pathName) > 0) {
+          Path filePath = path.lookup(pathName);
           
-            return createEntry(name, pathName, jarEntry, filePath);
-          }
-        } catch (IOException e) {
-          log.log(Level.FINER, e.toString(), e);
+          return createEntry(name, pathName, jarEntry, filePath);
         }
       }
     }
@@ -0,0 +1,662 @@
+/*
+ * Copyright (c) 1998-2012 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Resin(R) Open Source
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Resin Open Source is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Resin Open Source is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Resin Open Source; if not, write to the
+ *
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ *
+ * @author Scott Ferguson
+ */
+
+package com.caucho.loader.enhancer;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import com.caucho.bytecode.ByteCodeClassMatcher;
+import com.caucho.bytecode.ByteCodeClassScanner;
+import com.caucho.env.service.RootDirectorySystem;
+import com.caucho.env.thread.ThreadPool;
+import com.caucho.inject.Module;
+import com.caucho.util.CharBuffer;
+import com.caucho.util.Crc64;
+import com.caucho.util.LruCache;
+import com.caucho.vfs.Jar;
+import com.caucho.vfs.JarPath;
+import com.caucho.vfs.Path;
+import com.caucho.vfs.ReadStream;
+import com.caucho.vfs.Vfs;
+
+/**
+ * Persistent index of the scanned class information for a jar.
+ *
+ * The index records the superclass, interfaces, annotations and
+ * pool strings for each class, so a rescan of an unchanged jar replays
+ * the recorded data instead of reading every class file. Indexes are
+ * keyed by the jar's path, length and last-modified time and are saved
+ * in the data directory to be reused across restarts.
+ *
+ * The in-memory cache holds the indexes softly, since the data directory
+ * copy can be reloaded cheaply if the memory is needed.
+ */
+@Module
+class ScanIndex {
+  private static final Logger log
+    = Logger.getLogger(ScanIndex.class.getName());
+
+  private static final int INDEX_VERSION = 1;
+
+  private static final long PRELOAD_TIMEOUT = 60000L;
+
+  private static final LruCache<Path,SoftReference<JarIndex>> _indexCache
+    = new LruCache<Path,SoftReference<JarIndex>>(64);
+
+  // jars with an index build in progress, so a second caller waits
+  // for the build instead of repeating it
+  private static final ConcurrentHashMap<Path,CountDownLatch> _buildMap
+    = new ConcurrentHashMap<Path,CountDownLatch>();
+
+  private ScanIndex()
+  {
+  }
+
+  /**
+   * Returns the index for the jar, building it if it's missing or the jar
+   * has changed.
+   */
+  static JarIndex getIndex(Path jarPath)
+  {
+    JarIndex index = getCachedIndex(jarPath);
+
+    if (index != null && index.isValid(jarPath))
+      return index;
+
+    CountDownLatch latch = new CountDownLatch(1);
+    CountDownLatch buildLatch = _buildMap.putIfAbsent(jarPath, latch);
+
+    if (buildLatch != null) {
+      try {
+        buildLatch.await(PRELOAD_TIMEOUT, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        log.log(Level.FINEST, e.toString(), e);
+      }
+
+      index = getCachedIndex(jarPath);
+
+      if (index != null && index.isValid(jarPath))
+        return index;
+
+      // the other build failed or timed out
+      return loadOrBuildIndex(jarPath);
+    }
+
+    try {
+      return loadOrBuildIndex(jarPath);
+    } finally {
+      _buildMap.remove(jarPath, latch);
+      latch.countDown();
+    }
+  }
+
+  private static JarIndex loadOrBuildIndex(Path jarPath)
+  {
+    JarIndex index = loadIndex(jarPath);
+
+    if (index == null) {
+      index = buildIndex(jarPath);
+
+      if (index == null)
+        return null;
+
+      saveIndex(index);
+    }
+
+    _indexCache.put(jarPath, new SoftReference<JarIndex>(index));
+
+    return index;
+  }
+
+  private static JarIndex getCachedIndex(Path jarPath)
+  {
+    SoftReference<JarIndex> indexRef = _indexCache.get(jarPath);
+
+    if (indexRef != null)
+      return indexRef.get();
+    else
+      return null;
+  }
+
+  /**
+   * Builds the indexes for any changed jars in parallel before the
+   * listeners replay them, using at most one thread per processor.
+   */
+  static void preload(ArrayList<Path> jarList)
+  {
+    final ConcurrentLinkedQueue<Path> missingQueue
+      = new ConcurrentLinkedQueue<Path>();
+
+    for (Path jarPath : jarList) {
+      JarIndex index = getCachedIndex(jarPath);
+
+      if (index == null || ! index.isValid(jarPath))
+        missingQueue.add(jarPath);
+    }
+
+    int size = missingQueue.size();
+
+    if (size < 2)
+      return;
+
+    int workerCount
+      = Math.min(Runtime.getRuntime().availableProcessors(), size) - 1;
+
+    ThreadPool threadPool = ThreadPool.getCurrent();
+    final CountDownLatch latch = new CountDownLatch(workerCount);
+
+    for (int i = 0; i < workerCount; i++) {
+      Runnable task = new Runnable() {
+        @Override
+        public void run()
+        {
+          try {
+            buildQueue(missingQueue);
+          } finally {
+            latch.countDown();
+          }
+        }
+      };
+
+      if (! threadPool.schedule(task))
+        latch.countDown();
+    }
+
+    buildQueue(missingQueue);
+
+    try {
+      // a build still running when the wait expires is picked up by
+      // getIndex in the sequential scan
+      latch.await(PRELOAD_TIMEOUT, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      log.log(Level.FINEST, e.toString(), e);
+    }
+
+    missingQueue.clear();
+  }
+
+  private static void buildQueue(ConcurrentLinkedQueue<Path> queue)
+  {
+    Path jarPath;
+
+    while ((jarPath = queue.poll()) != null) {
+      try {
+        getIndex(jarPath);
+      } catch (Exception e) {
+        log.log(Level.FINE, e.toString(), e);
+      }
+    }
+  }
+
+  private static JarIndex buildIndex(Path jarPath)
+  {
+    Jar jar = JarPath.create(jarPath).getJar();
+    ZipFile zipFile = null;
+
+    try {
+      zipFile = jar.getZipFile();
+
+      if (zipFile == null)
+        return null;
+
+      JarIndex index = new JarIndex(jarPath.getFullPath(),
+                                    jarPath.getLength(),
+                                    jarPath.getLastModified());
+
+      ByteCodeClassScanner scanner = new ByteCodeClassScanner();
+      IndexRecorder recorder = new IndexRecorder();
+
+      Enumeration<? extends ZipEntry> e = zipFile.entries();
+
+      while (e.hasMoreElements()) {
+        ZipEntry entry = e.nextElement();
+
+        String entryName = entry.getName();
+        if (! entryName.endsWith(".class"))
+          continue;
+
+        recorder.init(entryName);
+
+        ReadStream is = Vfs.openRead(zipFile.getInputStream(entry));
+        try {
+          scanner.init(entryName, is, recorder);
+
+          if (scanner.scan())
+            index.addEntry(recorder.getEntry());
+        } finally {
+          is.close();
+        }
+      }
+
+      return index;
+    } catch (IOException e) {
+      log.log(Level.FINE, e.toString(), e);
+
+      return null;
+    } finally {
+      jar.closeZipFile(zipFile);
+    }
+  }
+
+  private static Path getIndexPath(Path jarPath)
+  {
+    RootDirectorySystem rootService = RootDirectorySystem.getCurrent();
+
+    if (rootService == null)
+      return null;
+
+    long crc = Crc64.generate(jarPath.getFullPath());
+
+    return rootService.getDataDirectory().lookup("scan-index/"
+                                                 + Long.toHexString(crc)
+                                                 + ".idx");
+  }
+
+  private static JarIndex loadIndex(Path jarPath)
+  {
+    Path indexPath = getIndexPath(jarPath);
+
+    if (indexPath == null || ! indexPath.canRead())
+      return null;
+
+    try {
+      InputStream is = indexPath.openRead();
+
+      try {
+        JarIndex index = JarIndex.read(new DataInputStream(is));
+
+        if (index != null && index.isValid(jarPath))
+          return index;
+        else
+          return null;
+      } finally {
+        is.close();
+      }
+    } catch (Exception e) {
+      log.log(Level.FINER, indexPath + ": " + e.toString(), e);
+
+      return null;
+    }
+  }
+
+  private static void saveIndex(JarIndex index)
+  {
+    Path indexPath = getIndexPath(Vfs.lookup(index.getPath()));
+
+    if (indexPath == null)
+      return;
+
+    Path tempPath = indexPath.getParent().lookup(indexPath.getTail()
+                                                 + ".tmp"
+                                                 + Thread.currentThread().getId());
+
+    try {
+      indexPath.getParent().mkdirs();
+
+      OutputStream os = tempPath.openWrite();
+
+      try {
+        DataOutputStream out = new DataOutputStream(os);
+
+        index.write(out);
+
+        out.flush();
+      } finally {
+        os.close();
+      }
+
+      tempPath.renameTo(indexPath);
+    } catch (IOException e) {
+      log.log(Level.FINER, indexPath + ": " + e.toString(), e);
+
+      try {
+        tempPath.remove();
+      } catch (IOException e1) {
+        log.log(Level.FINEST, e1.toString(), e1);
+      }
+    }
+  }
+
+  /**
+   * The recorded classes for a single jar.
+   */
+  static class JarIndex {
+    private final String _path;
+    private final long _length;
+    private final long _lastModified;
+
+    private final ArrayList<ClassEntry> _entries
+      = new ArrayList<ClassEntry>();
+
+    JarIndex(String path, long length, long lastModified)
+    {
+      _path = path;
+      _length = length;
+      _lastModified = lastModified;
+    }
+
+    String getPath()
+    {
+      return _path;
+    }
+
+    boolean isValid(Path jarPath)
+    {
+      return (_path.equals(jarPath.getFullPath())
+              && _length == jarPath.getLength()
+              && _lastModified == jarPath.getLastModified());
+    }
+
+    void addEntry(ClassEntry entry)
+    {
+      _entries.add(entry);
+    }
+
+    ArrayList<ClassEntry> getEntries()
+    {
+      return _entries;
+    }
+
+    void write(DataOutputStream out)
+      throws IOException
+    {
+      out.writeInt(INDEX_VERSION);
+      out.writeUTF(_path);
+      out.writeLong(_length);
+      out.writeLong(_lastModified);
+
+      out.writeInt(_entries.size());
+
+      for (ClassEntry entry : _entries) {
+        entry.write(out);
+      }
+    }
+
+    static JarIndex read(DataInputStream in)
+      throws IOException
+    {
+      if (in.readInt() != INDEX_VERSION)
+        return null;
+
+      String path = in.readUTF();
+      long length = in.readLong();
+      long lastModified = in.readLong();
+
+      JarIndex index = new JarIndex(path, length, lastModified);
+
+      int count = in.readInt();
+
+      for (int i = 0; i < count; i++) {
+        index.addEntry(ClassEntry.read(in));
+      }
+
+      return index;
+    }
+
+    @Override
+    public String toString()
+    {
+      return getClass().getSimpleName() + "[" + _path + "]";
+    }
+  }
+
+  /**
+   * The recorded scan data for a single class.
+   */
+  static class ClassEntry {
+    private static final char [][]NULL_CHARS = new char[0][];
+
+    private final String _entryName;
+    private final String _className;
+    private final int _modifiers;
+
+    private char []_superClass;
+    private char [][]_interfaces = NULL_CHARS;
+    private char [][]_annotations = NULL_CHARS;
+    private char [][]_poolStrings = NULL_CHARS;
+
+    ClassEntry(String entryName, String className, int modifiers)
+    {
+      _entryName = entryName;
+      _className = className;
+      _modifiers = modifiers;
+    }
+
+    String getEntryName()
+    {
+      return _entryName;
+    }
+
+    /**
+     * Replays the recorded scan against the matcher, following the same
+     * callback order as ByteCodeClassScanner.
+     */
+    boolean replay(ByteCodeClassMatcher matcher)
+    {
+      if (! matcher.scanClass(_className, _modifiers))
+        return false;
+
+      if (_superClass != null)
+        matcher.addSuperClass(_superClass, 0, _superClass.length);
+
+      for (char []name : _interfaces) {
+        matcher.addInterface(name, 0, name.length);
+      }
+
+      for (char []name : _annotations) {
+        matcher.addClassAnnotation(name, 0, name.length);
+      }
+
+      for (char []name : _poolStrings) {
+        matcher.addPoolString(name, 0, name.length);
+      }
+
+      return matcher.finishScan();
+    }
+
+    void write(DataOutputStream out)
+      throws IOException
+    {
+      out.writeUTF(_entryName);
+      out.writeUTF(_className);
+      out.writeInt(_modifiers);
+
+      if (_superClass != null) {
+        out.writeBoolean(true);
+        out.writeUTF(new String(_superClass));
+      }
+      else
+        out.writeBoolean(false);
+
+      writeNames(out, _interfaces);
+      writeNames(out, _annotations);
+      writeNames(out, _poolStrings);
+    }
+
+    static ClassEntry read(DataInputStream in)
+      throws IOException
+    {
+      String entryName = in.readUTF();
+      String className = in.readUTF();
+      int modifiers = in.readInt();
+
+      ClassEntry entry = new ClassEntry(entryName, className, modifiers);
+
+      if (in.readBoolean())
+        entry._superClass = in.readUTF().toCharArray();
+
+      entry._interfaces = readNames(in);
+      entry._annotations = readNames(in);
+      entry._poolStrings = readNames(in);
+
+      return entry;
+    }
+
+    private static void writeNames(DataOutputStream out, char [][]names)
+      throws IOException
+    {
+      out.writeInt(names.length);
+
+      for (char []name : names) {
+        out.writeUTF(new String(name));
+      }
+    }
+
+    private static char [][]readNames(DataInputStream in)
+      throws IOException
+    {
+      int length = in.readInt();
+
+      if (length == 0)
+        return NULL_CHARS;
+
+      char [][]names = new char[length][];
+
+      for (int i = 0; i < length; i++) {
+        names[i] = in.readUTF().toCharArray();
+      }
+
+      return names;
+    }
+  }
+
+  /**
+   * Matcher which accepts every class and records its scan data.
+   */
+  static class IndexRecorder implements ByteCodeClassMatcher {
+    private String _entryName;
+
+    private ClassEntry _entry;
+    private final ArrayList<char[]> _interfaces = new ArrayList<char[]>();
+    private final ArrayList<char[]> _annotations = new ArrayList<char[]>();
+    private final ArrayList<char[]> _poolStrings = new ArrayList<char[]>();
+
+    void init(String entryName)
+    {
+      _entryName = entryName;
+      _entry = null;
+
+      _interfaces.clear();
+      _annotations.clear();
+      _poolStrings.clear();
+    }
+
+    ClassEntry getEntry()
+    {
+      return _entry;
+    }
+
+    @Override
+    public boolean scanClass(String className, int modifiers)
+    {
+      _entry = new ClassEntry(_entryName, className, modifiers);
+
+      return true;
+    }
+
+    @Override
+    public boolean isAnnotationMatch(CharBuffer annotationClassName)
+    {
+      return false;
+    }
+
+    @Override
+    public void addSuperClass(char []buffer, int offset, int length)
+    {
+      _entry._superClass = copy(buffer, offset, length);
+    }
+
+    @Override
+    public void addInterface(char []buffer, int offset, int length)
+    {
+      _interfaces.add(copy(buffer, offset, length));
+    }
+
+    @Override
+    public void addClassAnnotation(char []buffer, int offset, int length)
+    {
+      _annotations.add(copy(buffer, offset, length));
+    }
+
+    @Override
+    public void addPoolString(char []buffer, int offset, int length)
+    {
+      _poolStrings.add(copy(buffer, offset, length));
+    }
+
+    @Override
+    public boolean finishScan()
+    {
+      if (_entry == null)
+        return false;
+
+      _entry._interfaces = toArray(_interfaces);
+      _entry._annotations = toArray(_annotations);
+      _entry._poolStrings = toArray(_poolStrings);
+
+      return true;
+    }
+
+    private static char []copy(char []buffer, int offset, int length)
+    {
+      char []value = new char[length];
+
+      System.arraycopy(buffer, offset, value, 0, length);
+
+      return value;
+    }
+
+    private static char [][]toArray(ArrayList<char[]> list)
+    {
+      if (list.size() == 0)
+        return ClassEntry.NULL_CHARS;
+
+      char [][]values = new char[list.size()][];
+
+      list.toArray(values);
+
+      return values;
+    }
+  }
+}
@@ -53,6 +53,12 @@ public interface ScanListener {
    */
   public boolean isRootScannable(Path root, String packageRoot);
 
+  /**
+   * Returns true if a later isRootScannable might accept the root. Unlike
+   * isRootScannable, the check doesn't mark the root as scanned.
+   */
+  public boolean isRootScanCandidate(Path root, String packageRoot);
+
   /**
    * Returns the state when scanning the class
    *
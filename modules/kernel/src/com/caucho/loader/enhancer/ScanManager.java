@@ -32,12 +32,9 @@ package com.caucho.loader.enhancer;
 import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
-import java.util.Enumeration;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 
 import com.caucho.bytecode.ByteCodeClassMatcher;
 import com.caucho.bytecode.ByteCodeClassScanner;
@@ -45,7 +42,6 @@ import com.caucho.inject.Module;
 import com.caucho.loader.EnvironmentClassLoader;
 import com.caucho.util.CharBuffer;
 import com.caucho.vfs.Depend;
-import com.caucho.vfs.Jar;
 import com.caucho.vfs.JarPath;
 import com.caucho.vfs.Path;
 import com.caucho.vfs.ReadStream;
@@ -113,8 +109,7 @@ public class ScanManager {
       JarByteCodeMatcher matcher
         = new JarByteCodeMatcher(loader, root, packageRoot, listeners);
 
-      scanForJarClasses(jar, packageRoot,
-                        scanner, matcher);
+      scanForJarClasses(jar, packageRoot, matcher);
     }
     else {
       PathByteCodeMatcher matcher
@@ -168,58 +163,69 @@ public class ScanManager {
 
   private void scanForJarClasses(Path path,
                                  String packagePath,
-                                 ByteCodeClassScanner classScanner,
                                  JarByteCodeMatcher matcher)
   {
     if (isNullScanPath(path)) {
       return;
     }
-    
-    ZipFile zipFile = null;
-    Jar jar = JarPath.create(path).getJar();
 
-    try {
-      zipFile = jar.getZipFile();
+    ScanIndex.JarIndex index = ScanIndex.getIndex(path);
 
-      if (zipFile == null)
-        return;
-      
-      boolean isScanMatch = false;
+    if (index == null)
+      return;
 
-      Enumeration<? extends ZipEntry> e = zipFile.entries();
+    boolean isScanMatch = false;
 
-      while (e.hasMoreElements()) {
-        ZipEntry entry = e.nextElement();
+    for (ScanIndex.ClassEntry entry : index.getEntries()) {
+      String entryName = entry.getEntryName();
 
-        String entryName = entry.getName();
-        if (! entryName.endsWith(".class"))
-          continue;
+      if (packagePath != null && ! entryName.startsWith(packagePath))
+        continue;
 
-        if (packagePath != null && ! entryName.startsWith(packagePath))
-          continue;
+      matcher.init();
 
-        matcher.init();
+      if (entry.replay(matcher))
+        isScanMatch = true;
+    }
 
-        ReadStream is = Vfs.openRead(zipFile.getInputStream(entry));
-        try {
-          classScanner.init(entryName, is, matcher);
+    if (! isScanMatch)
+      addNullScanPath(path);
+  }
 
-          if (classScanner.scan())
-            isScanMatch = true;
-        } finally {
-          is.close();
-        }
+  /**
+   * Builds the scan indexes for the jar roots before the listeners
+   * are called, so changed jars can be indexed in parallel. Only jars
+   * some listener may scan are indexed.
+   */
+  public void preload(ArrayList<URL> urlList, ArrayList<String> packageList)
+  {
+    ArrayList<Path> jarList = new ArrayList<Path>();
+
+    for (int i = 0; i < urlList.size(); i++) {
+      Path jar = Vfs.lookup(urlList.get(i));
+
+      if (! jar.getPath().endsWith(".jar") || jar instanceof JarPath)
+        continue;
+
+      if (! isNullScanPath(jar)
+          && isScanCandidate(JarPath.create(jar), packageList.get(i))) {
+        jarList.add(jar);
       }
-      
-      if (! isScanMatch)
-        addNullScanPath(path);
-    } catch (IOException e) {
-      log.log(Level.FINE, e.toString(), e);
-    } finally {
-      jar.closeZipFile(zipFile);
     }
+
+    ScanIndex.preload(jarList);
   }
-  
+
+  private boolean isScanCandidate(Path root, String packageRoot)
+  {
+    for (ScanListener listener : _listeners) {
+      if (listener.isRootScanCandidate(root, packageRoot))
+        return true;
+    }
+
+    return false;
+  }
+
   /**
    * Adds a jar where none of the classes have a scanned match.
    */
@@ -441,6 +441,21 @@ public class AbstractRolloverLog implements Closeable {
     }
   }
   
+  /**
+   * Writes a batch of buffers to the underlying log, taking the log lock
+   * once for the batch.  Each buffer is copied into the log's write
+   * buffer in turn.
+   */
+  protected void write(byte [][]buffers, int []lengths, int count)
+    throws IOException
+  {
+    synchronized (_logLock) {
+      for (int i = 0; i < count; i++) {
+        write(buffers[i], 0, lengths[i]);
+      }
+    }
+  }
+  
   protected TempStreamApi createTempStream()
   {
     return new TempStream();
@@ -491,48 +506,62 @@ public class AbstractRolloverLog implements Closeable {
       log.log(Level.WARNING, e.toString(), e);
     }
 
-    _isRollingOver = true;
-    
+    Path savedPath = null;
+    Path stagePath = null;
+
     try {
-      if (! _isInit)
-        return;
-      
-      Path savedPath = null;
+      _isRollingOver = true;
 
-      long now = CurrentTime.getCurrentTime();
+      try {
+        if (! _isInit)
+          return;
 
-      long lastPeriodEnd = _nextPeriodEnd;
+        long now = CurrentTime.getCurrentTime();
 
-      _nextPeriodEnd = nextRolloverTime(now);
+        long lastPeriodEnd = _nextPeriodEnd;
 
-      Path path = getPath();
+        _nextPeriodEnd = nextRolloverTime(now);
+
+        Path path = getPath();
 
-      synchronized (_logLock) {
-        flushTempStream();
+        // a staging file left by an interrupted rollover
+        archiveAbandonedStage();
 
-        if (lastPeriodEnd <= now && lastPeriodEnd > 0) {
-          closeLogStream();
+        synchronized (_logLock) {
+          flushTempStream();
+
+          if (lastPeriodEnd <= now && lastPeriodEnd > 0) {
+            closeLogStream();
+
+            savedPath = getSavedPath(lastPeriodEnd - 1);
+          }
+          else if (path != null && getRolloverSize() <= path.getLength()) {
+            closeLogStream();
 
-          savedPath = getSavedPath(lastPeriodEnd - 1);
+            savedPath = getSavedPath(now);
+          }
         }
-        else if (path != null && getRolloverSize() <= path.getLength()) {
-          closeLogStream();
 
-          savedPath = getSavedPath(now);
+        // the rename is outside the synchronized block.  While rolling
+        // over, writers append to the temp stream and don't open the log
+        if (savedPath != null)
+          stagePath = stagePathToArchive(savedPath);
+      } finally {
+        synchronized (_logLock) {
+          _isRollingOver = false;
+          flushTempStream();
         }
       }
-      
-      // archiving of path is outside of the synchronized block to
-      // avoid freezing during archive
-      if (savedPath != null) {
-        movePathToArchive(savedPath);
+
+      // compression of the archive is after the rollover completes, so
+      // new log entries go to the new file instead of the temp stream
+      if (stagePath != null) {
+        archiveStagedPath(stagePath, savedPath);
       }
+
+      if (savedPath != null && _rolloverCount > 0)
+        removeOldLogs();
     } finally {
-      synchronized (_logLock) {
-        _isRollingOver = false;
-        flushTempStream();
-      }
-      
       _rolloverListener.requeue(_rolloverAlarm);
     }
   }
@@ -611,15 +640,15 @@ public class AbstractRolloverLog implements Closeable {
                      path, System.getProperty("user.name"), exn), exn);
   }
 
-  private void movePathToArchive(Path savedPath)
+  /**
+   * Moves the closed log out of the way of new entries.  Called from
+   * the rollover worker while the log is rolling over.
+   *
+   * @return the staged path to be compressed, or null if the archive
+   * is complete.
+   */
+  private Path stagePathToArchive(Path savedPath)
   {
-    if (savedPath == null)
-      return;
-
-    synchronized (_logLock) {
-      closeLogStream();
-    }
-
     Path path = getPath();
 
     String savedName = savedPath.getTail();
@@ -635,18 +664,91 @@ public class AbstractRolloverLog implements Closeable {
     }
 
     try {
-      if (path.exists()) {
-        WriteStream os = null;
-        OutputStream out = null;
+      if (! path.exists()) {
+        return null;
+      }
+
+      // *.gz and *.zip are compressed after the rollover.  Others are
+      // just renamed
+      if (savedName.endsWith(".gz") || savedName.endsWith(".zip")) {
+        Path stagePath = path.getParent().lookup(path.getTail() + ".rollover");
+
+        if (path.renameTo(stagePath)) {
+          return stagePath;
+        }
 
-        // *.gz and *.zip are copied.  Others are just renamed
+        // the rename failed, so compress in place while writers
+        // still append to the temp stream
+        archiveStagedPath(path, savedPath);
+
+        return null;
+      }
+      else {
+        path.renameTo(savedPath);
+      }
+    } catch (Exception e) {
+      logWarning(L.l("Error rotating logs: {0}", e.toString()), e);
+    }
+
+    try {
+      path.remove();
+    } catch (Exception e) {
+      logWarning(L.l("Error truncating logs"), e);
+    }
+
+    return null;
+  }
+
+  /**
+   * Archives a staging file left behind when the server stopped before
+   * its compression completed.
+   */
+  private void archiveAbandonedStage()
+  {
+    Path path = getPath();
+
+    if (path == null || getPathFormat() != null)
+      return;
+
+    Path stagePath = path.getParent().lookup(path.getTail() + ".rollover");
+
+    if (! stagePath.exists())
+      return;
+
+    Path savedPath = getArchivePath(stagePath.getLastModified());
+    String savedName = savedPath.getTail();
+
+    if (savedName.endsWith(".gz") || savedName.endsWith(".zip")) {
+      archiveStagedPath(stagePath, savedPath);
+    }
+    else {
+      try {
+        stagePath.renameTo(savedPath);
+      } catch (Exception e) {
+        logWarning(L.l("Error rotating logs: {0}", e.toString()), e);
+      }
+    }
+
+    if (_rolloverCount > 0)
+      removeOldLogs();
+  }
+
+  /**
+   * Compresses the staged log into the archive.
+   */
+  private void archiveStagedPath(Path stagePath, Path savedPath)
+  {
+    String savedName = savedPath.getTail();
+
+    try {
+      WriteStream os = savedPath.openWrite();
+      OutputStream out = null;
+
+      try {
         if (savedName.endsWith(".gz")) {
-          os = savedPath.openWrite();
           out = new GZIPOutputStream(os);
         }
-        else if (savedName.endsWith(".zip")) {
-          os = savedPath.openWrite();
-
+        else {
           ZipOutputStream zip = new ZipOutputStream(os);
           String entryName = savedName.substring(0, savedName.length() - 4);
           ZipEntry entry = new ZipEntry(entryName);
@@ -655,29 +757,21 @@ public class AbstractRolloverLog implements Closeable {
           out = zip;
         }
 
-        if (out != null) {
-          try {
-            path.writeToStream(out);
-          } finally {
-            try {
-              out.close();
-            } catch (Exception e) {
-              // can't log in log rotation routines
-              logWarning(L.l("Error closing logs"), e);
-            }
-
-            try {
-              if (out != os) {
-                os.close();
-              }
-            } catch (Exception e) {
-              // can't log in log rotation routines
-              logWarning(L.l("Error closing logs"), e);
-            }
-          }
+        stagePath.writeToStream(out);
+      } finally {
+        try {
+          if (out != null)
+            out.close();
+        } catch (Exception e) {
+          // can't log in log rotation routines
+          logWarning(L.l("Error closing logs"), e);
         }
-        else {
-          path.renameTo(savedPath);
+
+        try {
+          os.close();
+        } catch (Exception e) {
+          // can't log in log rotation routines
+          logWarning(L.l("Error closing logs"), e);
         }
       }
     } catch (Exception e) {
@@ -685,23 +779,10 @@ public class AbstractRolloverLog implements Closeable {
     }
 
     try {
-      path.remove();
-      /*
-      try {
-        if (! path.truncate())
-          path.remove();
-      } catch (IOException e) {
-        path.remove();
-
-        throw e;
-      }
-      */
+      stagePath.remove();
     } catch (Exception e) {
       logWarning(L.l("Error truncating logs"), e);
     }
-
-    if (_rolloverCount > 0)
-      removeOldLogs();
   }
 
   /**
@@ -53,4 +53,21 @@ public interface EnvironmentMXBean extends ManagedObjectMXBean {
    */
   @Description("The classpath for the environment")
   public String []getClassPath();
+
+  //
+  // Statistics
+  //
+
+  /**
+   * Returns the number of class and resource lookups served from the cache.
+   */
+  @Description("The total number of class and resource lookups served from the cache")
+  public long getLookupCacheHitCountTotal();
+
+  /**
+   * Returns the number of class and resource lookups which searched
+   * the loaders without finding a match.
+   */
+  @Description("The total number of class and resource lookups which searched the loaders without finding a match")
+  public long getLookupCacheMissCountTotal();
 }
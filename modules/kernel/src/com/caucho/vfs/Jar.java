@@ -75,6 +75,10 @@ public class Jar implements CacheListener {
   
   private LruCache<String,ZipEntry> _zipEntryCache
     = new LruCache<String,ZipEntry>(64);
+
+  // central directory index, shared by all loaders using the jar
+  private volatile JarEntryIndex _entryIndex;
+  private volatile boolean _isEntryIndexFailed;
   
   private Path _backing;
   private boolean _backingIsFile;
@@ -338,6 +342,11 @@ public class Jar implements CacheListener {
     // server/249f, server/249g
     // XXX: facelets vs issue of meta-inf (i.e. lower case)
 
+    JarEntryIndex index = getEntryIndex();
+
+    if (index != null)
+      return index.find(getEntryName(path)) >= 0;
+
     try {
       ZipEntry entry = getZipEntry(path);
 
@@ -356,6 +365,14 @@ public class Jar implements CacheListener {
    */
   public boolean isDirectory(String path)
   {
+    JarEntryIndex index = getEntryIndex();
+
+    if (index != null) {
+      int entry = index.find(getEntryName(path));
+
+      return entry >= 0 && index.isDirectory(entry);
+    }
+
     try {
       ZipEntry entry = getZipEntry(path);
 
@@ -374,6 +391,14 @@ public class Jar implements CacheListener {
    */
   public boolean isFile(String path)
   {
+    JarEntryIndex index = getEntryIndex();
+
+    if (index != null) {
+      int entry = index.find(getEntryName(path));
+
+      return entry >= 0 && ! index.isDirectory(entry);
+    }
+
     try {
       ZipEntry entry = getZipEntry(path);
 
@@ -393,6 +418,14 @@ public class Jar implements CacheListener {
    */
   public long getLastModified(String path)
   {
+    JarEntryIndex index = getEntryIndex();
+
+    if (index != null) {
+      int entry = index.find(getEntryName(path));
+
+      return entry >= 0 ? index.getTime(entry) : -1;
+    }
+
     try {
       // this entry time can cause problems ...
       ZipEntry entry = getZipEntry(path);
@@ -413,6 +446,14 @@ public class Jar implements CacheListener {
    */
   public long getLength(String path)
   {
+    JarEntryIndex index = getEntryIndex();
+
+    if (index != null) {
+      int entry = index.find(getEntryName(path));
+
+      return entry >= 0 ? index.getSize(entry) : -1;
+    }
+
     try {
       ZipEntry entry = getZipEntry(path);
 
@@ -431,6 +472,14 @@ public class Jar implements CacheListener {
    */
   public boolean canRead(String path)
   {
+    JarEntryIndex index = getEntryIndex();
+
+    if (index != null) {
+      int entry = index.find(getEntryName(path));
+
+      return entry >= 0 && ! index.isDirectory(entry);
+    }
+
     try {
       ZipEntry entry = getZipEntry(path);
 
@@ -523,6 +572,37 @@ public class Jar implements CacheListener {
       }
   }
 
+  /**
+   * Returns the central directory index, building it on first use. Returns
+   * null if the jar can't be indexed, in which case the ZipFile is used.
+   */
+  private JarEntryIndex getEntryIndex()
+  {
+    isCacheValid();
+
+    JarEntryIndex index = _entryIndex;
+
+    if (index != null || _isEntryIndexFailed || ! _backingIsFile)
+      return index;
+
+    index = JarEntryIndex.create(_backing);
+
+    if (index != null)
+      _entryIndex = index;
+    else
+      _isEntryIndexFailed = true;
+
+    return index;
+  }
+
+  private static String getEntryName(String path)
+  {
+    if (path.startsWith("/"))
+      return path.substring(1);
+    else
+      return path;
+  }
+
   public ZipEntry getZipEntry(String path)
     throws IOException
   {
@@ -726,6 +806,8 @@ public class Jar implements CacheListener {
       _depend = null;
       _isSigned = null;
       _zipEntryCache.clear();
+      _entryIndex = null;
+      _isEntryIndexFailed = false;
       
       _lastModified = newLastModified;
       _length = newLength;
@@ -0,0 +1,355 @@
+/*
+ * Copyright (c) 1998-2012 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Resin(R) Open Source
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Resin Open Source is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Resin Open Source is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Resin Open Source; if not, write to the
+ *
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ *
+ * @author Scott Ferguson
+ */
+
+package com.caucho.vfs;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.GregorianCalendar;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Read-only index of a jar's central directory.
+ *
+ * The central directory is read once into parallel arrays with an
+ * open-addressing hash table over the entry names, so entry lookups,
+ * including misses, don't need an open ZipFile. The file isn't mapped,
+ * so the jar isn't locked on Windows after the index is built.
+ */
+final class JarEntryIndex {
+  private static final Logger log
+    = Logger.getLogger(JarEntryIndex.class.getName());
+
+  private static final int END_SIGNATURE = 0x06054b50;
+  private static final int CENTRAL_SIGNATURE = 0x02014b50;
+
+  private static final int END_LENGTH = 22;
+  private static final int CENTRAL_LENGTH = 46;
+  private static final int COMMENT_MAX = 0xffff;
+
+  private static final int EXTRA_TIMESTAMP = 0x5455;
+  private static final int FLAG_UTF8 = 0x800;
+
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+  private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+  private final String []_names;
+  private final long []_sizes;
+  // extended timestamp in ms, or 0 to use the DOS time
+  private final long []_times;
+  private final int []_dosTimes;
+
+  // open-addressing table of entry index + 1
+  private final int []_hashTable;
+  private final int _hashMask;
+
+  private JarEntryIndex(String []names,
+                        long []sizes,
+                        long []times,
+                        int []dosTimes)
+  {
+    _names = names;
+    _sizes = sizes;
+    _times = times;
+    _dosTimes = dosTimes;
+
+    int capacity = 16;
+    while (capacity < 2 * names.length) {
+      capacity *= 2;
+    }
+
+    _hashTable = new int[capacity];
+    _hashMask = capacity - 1;
+
+    for (int i = 0; i < names.length; i++) {
+      int hash = names[i].hashCode() & _hashMask;
+
+      while (_hashTable[hash] != 0) {
+        hash = (hash + 1) & _hashMask;
+      }
+
+      _hashTable[hash] = i + 1;
+    }
+  }
+
+  /**
+   * Builds the index for the jar, returning null if the jar can't be
+   * indexed, e.g. for zip64 archives.
+   */
+  static JarEntryIndex create(Path backing)
+  {
+    RandomAccessFile file = null;
+
+    try {
+      file = new RandomAccessFile(backing.getNativePath(), "r");
+
+      return create(file);
+    } catch (IOException e) {
+      log.log(Level.FINER, backing + ": " + e.toString(), e);
+
+      return null;
+    } finally {
+      try {
+        if (file != null)
+          file.close();
+      } catch (IOException e) {
+        log.log(Level.FINEST, e.toString(), e);
+      }
+    }
+  }
+
+  private static JarEntryIndex create(RandomAccessFile file)
+    throws IOException
+  {
+    FileChannel channel = file.getChannel();
+
+    long fileLength = channel.size();
+
+    if (fileLength < END_LENGTH)
+      return null;
+
+    int tailLength = (int) Math.min(fileLength, END_LENGTH + COMMENT_MAX);
+    long tailOffset = fileLength - tailLength;
+
+    ByteBuffer tail = read(channel, tailOffset, tailLength);
+
+    int endOffset = -1;
+
+    for (int i = tailLength - END_LENGTH; i >= 0; i--) {
+      if (tail.getInt(i) == END_SIGNATURE) {
+        endOffset = i;
+        break;
+      }
+    }
+
+    if (endOffset < 0)
+      return null;
+
+    int count = tail.getShort(endOffset + 10) & 0xffff;
+    long cdLength = tail.getInt(endOffset + 12) & 0xffffffffL;
+    long cdOffset = tail.getInt(endOffset + 16) & 0xffffffffL;
+
+    // zip64 archives use the ZipFile fallback
+    if (count == 0xffff || cdLength == 0xffffffffL || cdOffset == 0xffffffffL)
+      return null;
+
+    if (fileLength < cdOffset + cdLength)
+      return null;
+
+    if (Integer.MAX_VALUE < cdLength)
+      return null;
+
+    ByteBuffer cd = read(channel, cdOffset, (int) cdLength);
+
+    String []names = new String[count];
+    long []sizes = new long[count];
+    long []times = new long[count];
+    int []dosTimes = new int[count];
+
+    byte []nameBuffer = new byte[256];
+    int offset = 0;
+
+    for (int i = 0; i < count; i++) {
+      if (cdLength < offset + CENTRAL_LENGTH
+          || cd.getInt(offset) != CENTRAL_SIGNATURE) {
+        return null;
+      }
+
+      int flags = cd.getShort(offset + 8) & 0xffff;
+      int dosTime = cd.getInt(offset + 12);
+      long size = cd.getInt(offset + 24) & 0xffffffffL;
+      int nameLength = cd.getShort(offset + 28) & 0xffff;
+      int extraLength = cd.getShort(offset + 30) & 0xffff;
+      int commentLength = cd.getShort(offset + 32) & 0xffff;
+
+      if (size == 0xffffffffL)
+        return null;
+
+      if (nameBuffer.length < nameLength)
+        nameBuffer = new byte[2 * nameLength];
+
+      cd.position(offset + CENTRAL_LENGTH);
+      cd.get(nameBuffer, 0, nameLength);
+
+      Charset charset = (flags & FLAG_UTF8) != 0 ? UTF8 : ISO_8859_1;
+
+      names[i] = new String(nameBuffer, 0, nameLength, charset);
+      sizes[i] = size;
+      times[i] = getExtendedTime(cd, offset + CENTRAL_LENGTH + nameLength,
+                                 extraLength);
+      dosTimes[i] = dosTime;
+
+      offset += CENTRAL_LENGTH + nameLength + extraLength + commentLength;
+    }
+
+    return new JarEntryIndex(names, sizes, times, dosTimes);
+  }
+
+  /**
+   * Reads a region of the file into a heap buffer.
+   */
+  private static ByteBuffer read(FileChannel channel, long offset, int length)
+    throws IOException
+  {
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, offset + buffer.position()) < 0)
+        throw new EOFException();
+    }
+
+    buffer.clear();
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+    return buffer;
+  }
+
+  /**
+   * Returns the extended timestamp in milliseconds, or 0 if the entry
+   * only has a DOS time.
+   */
+  private static long getExtendedTime(ByteBuffer cd, int offset, int length)
+  {
+    int end = offset + length;
+
+    while (offset + 4 <= end) {
+      int tag = cd.getShort(offset) & 0xffff;
+      int size = cd.getShort(offset + 2) & 0xffff;
+
+      if (tag == EXTRA_TIMESTAMP && size >= 5
+          && (cd.get(offset + 4) & 0x1) != 0) {
+        return 1000L * (cd.getInt(offset + 5) & 0xffffffffL);
+      }
+
+      offset += 4 + size;
+    }
+
+    return 0;
+  }
+
+  private static long dosToJavaTime(int dosTime)
+  {
+    GregorianCalendar cal
+      = new GregorianCalendar(((dosTime >> 25) & 0x7f) + 1980,
+                              ((dosTime >> 21) & 0x0f) - 1,
+                              (dosTime >> 16) & 0x1f,
+                              (dosTime >> 11) & 0x1f,
+                              (dosTime >> 5) & 0x3f,
+                              (dosTime << 1) & 0x3e);
+
+    return cal.getTimeInMillis();
+  }
+
+  /**
+   * Returns the entry index for the path, or -1. As with
+   * ZipFile.getEntry, a directory entry "path/" matches "path".
+   */
+  int find(String path)
+  {
+    int index = findExact(path);
+
+    if (index < 0 && ! path.endsWith("/"))
+      index = findDirectory(path);
+
+    return index;
+  }
+
+  private int findExact(String path)
+  {
+    int []hashTable = _hashTable;
+    int hash = path.hashCode() & _hashMask;
+
+    int value;
+    while ((value = hashTable[hash]) != 0) {
+      if (_names[value - 1].equals(path))
+        return value - 1;
+
+      hash = (hash + 1) & _hashMask;
+    }
+
+    return -1;
+  }
+
+  /**
+   * Finds the "path/" entry without allocating the name.
+   */
+  private int findDirectory(String path)
+  {
+    int []hashTable = _hashTable;
+    // hash of path + "/"
+    int hash = (31 * path.hashCode() + '/') & _hashMask;
+    int length = path.length();
+
+    int value;
+    while ((value = hashTable[hash]) != 0) {
+      String name = _names[value - 1];
+
+      if (name.length() == length + 1
+          && name.charAt(length) == '/'
+          && name.startsWith(path)) {
+        return value - 1;
+      }
+
+      hash = (hash + 1) & _hashMask;
+    }
+
+    return -1;
+  }
+
+  boolean isDirectory(int index)
+  {
+    return _names[index].endsWith("/");
+  }
+
+  long getSize(int index)
+  {
+    return _sizes[index];
+  }
+
+  long getTime(int index)
+  {
+    long time = _times[index];
+
+    if (time != 0)
+      return time;
+    else
+      return dosToJavaTime(_dosTimes[index]);
+  }
+
+  int size()
+  {
+    return _names.length;
+  }
+}
@@ -58,6 +58,11 @@ public class DOMBuilder implements XMLWriter, ContentHandler, ErrorHandler {
 
   private String _singleText;
   private CharBuffer _text = new CharBuffer();
+
+  // short text and attribute values, e.g. indentation, are shared
+  private static final int STRING_CACHE_SIZE = 256;
+  private static final int STRING_CACHE_MAX = 32;
+  private final String []_stringCache = new String[STRING_CACHE_SIZE];
   
   private boolean _escapeText;
   private boolean _strictXml;
@@ -269,7 +274,7 @@ public class DOMBuilder implements XMLWriter, ContentHandler, ErrorHandler {
     int length = attributes.getLength();
     for (int i = 0; i < length; i++) {
       QName attrName = attributes.getName(i);
-      String value = attributes.getValue(i);
+      String value = toSharedString(attributes.getValue(i));
 
       elt.setAttribute(attrName, value);
     }
@@ -433,6 +438,7 @@ public class DOMBuilder implements XMLWriter, ContentHandler, ErrorHandler {
     else if (_singleText != null) {
       _text.append(_singleText);
       _text.append(text);
+      _singleText = null;
     }
     else
       _text.append(text);
@@ -448,8 +454,8 @@ public class DOMBuilder implements XMLWriter, ContentHandler, ErrorHandler {
       return;
     
     if (_singleText != null) {
-      _singleText = null;
       _text.append(_singleText);
+      _singleText = null;
     }
     _text.append(buffer, offset, length);
     
@@ -553,11 +559,72 @@ public class DOMBuilder implements XMLWriter, ContentHandler, ErrorHandler {
     if (_text.length() == 0)
       return;
     
-    Node text = _doc.createTextNode(_text.toString());
+    Node text = _doc.createTextNode(toSharedString(_text));
     _text.clear();
 
     _node.appendChild(text);
   }
+
+  /**
+   * Returns the cached string matching the value if it's short, so
+   * repeated values in a large document share a single string.
+   */
+  private String toSharedString(String value)
+  {
+    if (value == null || STRING_CACHE_MAX < value.length())
+      return value;
+
+    int index = getStringCacheIndex(value.hashCode());
+
+    String cachedValue = _stringCache[index];
+
+    if (value.equals(cachedValue))
+      return cachedValue;
+
+    _stringCache[index] = value;
+
+    return value;
+  }
+
+  private String toSharedString(CharBuffer cb)
+  {
+    int length = cb.length();
+
+    if (STRING_CACHE_MAX < length)
+      return cb.toString();
+
+    char []buffer = cb.getBuffer();
+
+    // same hash as String.hashCode()
+    int hash = 0;
+    for (int i = 0; i < length; i++) {
+      hash = 31 * hash + buffer[i];
+    }
+
+    int index = getStringCacheIndex(hash);
+
+    String cachedValue = _stringCache[index];
+
+    if (cachedValue != null && cachedValue.length() == length) {
+      int i = 0;
+      for (; i < length && cachedValue.charAt(i) == buffer[i]; i++) {
+      }
+
+      if (i == length)
+        return cachedValue;
+    }
+
+    String value = cb.toString();
+
+    _stringCache[index] = value;
+
+    return value;
+  }
+
+  private static int getStringCacheIndex(int hash)
+  {
+    return (hash ^ (hash >>> 8) ^ (hash >>> 16)) & (STRING_CACHE_SIZE - 1);
+  }
   
   public void fatalError(SAXParseException e)
     throws SAXException
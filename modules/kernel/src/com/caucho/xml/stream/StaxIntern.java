@@ -35,9 +35,11 @@ import javax.xml.namespace.QName;
  * Interning names
  */
 public class StaxIntern {
-  private static final int SIZE = 203;
+  private static final int SIZE = 256;
   
-  private final Entry []_entries = new Entry[SIZE];
+  private Entry []_entries = new Entry[SIZE];
+  private int _mask = SIZE - 1;
+  private int _size;
 
   private final NamespaceReaderContext _namespaceContext;
 
@@ -55,7 +57,7 @@ public class StaxIntern {
       hash = 37 * hash + buffer[offset + i];
     }
 
-    int bucket = (hash & 0x7fffffff) % SIZE;
+    int bucket = (hash ^ (hash >>> 16)) & _mask;
 
     Entry entry;
 
@@ -70,13 +72,43 @@ public class StaxIntern {
                       buffer, offset, length,
                       colon,
                       isAttribute);
+    entry._hash = hash;
     _entries[bucket] = entry;
 
+    // keeps the chains short for name-heavy documents
+    if (_entries.length < ++_size)
+      resize();
+
     return entry;
   }
 
+  private void resize()
+  {
+    Entry []oldEntries = _entries;
+    Entry []entries = new Entry[2 * oldEntries.length];
+    int mask = entries.length - 1;
+
+    for (int i = 0; i < oldEntries.length; i++) {
+      Entry next;
+
+      for (Entry entry = oldEntries[i]; entry != null; entry = next) {
+        next = entry._next;
+
+        int hash = entry._hash;
+        int bucket = (hash ^ (hash >>> 16)) & mask;
+
+        entry._next = entries[bucket];
+        entries[bucket] = entry;
+      }
+    }
+
+    _entries = entries;
+    _mask = mask;
+  }
+
   final class Entry {
-    final Entry _next;
+    Entry _next;
+    int _hash;
     
     final char []_buf;
     final boolean _isAttribute;
@@ -101,6 +101,8 @@ public class XMLStreamReaderImpl implements XMLStreamReader {
   private TempCharBuffer _tempCharBuffer;
   private char []_cBuf;
   private int _cBufLength;
+  // getText() string for the current event, created on demand
+  private String _textString;
 
   public XMLStreamReaderImpl(InputStream is)
     throws XMLStreamException
@@ -414,7 +416,10 @@ public class XMLStreamReaderImpl implements XMLStreamReader {
    */
   public String getText()
   {
-    return new String(_cBuf, 0, _cBufLength);
+    if (_textString == null)
+      _textString = new String(_cBuf, 0, _cBufLength);
+
+    return _textString;
   }
 
   /**
@@ -620,6 +625,7 @@ public class XMLStreamReaderImpl implements XMLStreamReader {
     throws IOException, XMLStreamException
   {
     _cBufLength = 0;
+    _textString = null;
 
     // we pop the namespace context when the user is finished
     // working with the END_ELEMENT event
@@ -814,7 +820,17 @@ public class XMLStreamReaderImpl implements XMLStreamReader {
     int entity = -1;
     
     loop:
-    for (; index < length && (ch = read()) >= 0; index++) {
+    for (; index < length; index++) {
+      if (entity < 0) {
+        index = readText(cBuf, index, length);
+
+        if (length <= index)
+          break;
+      }
+
+      if ((ch = read()) < 0)
+        break;
+
       switch (ch) {
       case '<':
         unread();
@@ -869,6 +885,58 @@ public class XMLStreamReaderImpl implements XMLStreamReader {
     return isIgnorableWhitespace ? SPACE : CHARACTERS;
   }
 
+  /**
+   * Copies a run of plain text directly from the input buffer, stopping
+   * at markup, entities and carriage returns, which readData handles.
+   */
+  private int readText(char []cBuf, int index, int length)
+  {
+    char []inputBuf = _inputBuf;
+    int inputOffset = _inputOffset;
+    int inputLength = _inputLength;
+
+    if (length - index < inputLength - inputOffset)
+      inputLength = inputOffset + length - index;
+
+    int start = inputOffset;
+    int col = _col;
+    boolean isWhitespace = _isWhitespace;
+
+    loop:
+    for (; inputOffset < inputLength; inputOffset++) {
+      char ch = inputBuf[inputOffset];
+
+      switch (ch) {
+      case '<': case '&': case '\r':
+        break loop;
+
+      case '\n':
+        _row++;
+        _lastCol = col;
+        col = 1;
+        break;
+
+      case ' ': case '\t':
+        col++;
+        break;
+
+      default:
+        isWhitespace = false;
+        col++;
+        break;
+      }
+
+      cBuf[index++] = ch;
+    }
+
+    _offset += inputOffset - start;
+    _inputOffset = inputOffset;
+    _col = col;
+    _isWhitespace = isWhitespace;
+
+    return index;
+  }
+
   private String resolveEntity(String s)
     throws XMLStreamException
   {
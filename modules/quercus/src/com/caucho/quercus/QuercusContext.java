@@ -212,6 +212,7 @@ public class QuercusContext
   private boolean _isRequireSource;
 
   private boolean _isConnectionPool = true;
+  private int _preparedStatementCacheSize = 64;
 
   private DataSource _database;
 
@@ -827,6 +828,23 @@ public class QuercusContext
     return _isConnectionPool;
   }
 
+  /**
+   * Sets the per-connection prepared statement cache size for pooled
+   * connections, 0 to disable.
+   */
+  public void setPreparedStatementCacheSize(int size)
+  {
+    _preparedStatementCacheSize = size;
+  }
+
+  /**
+   * Returns the per-connection prepared statement cache size.
+   */
+  public int getPreparedStatementCacheSize()
+  {
+    return _preparedStatementCacheSize;
+  }
+
   private void initJavaClasses()
   {
     for (Map.Entry<String, Class<?>> entry : _javaInitClassMap.entrySet()) {
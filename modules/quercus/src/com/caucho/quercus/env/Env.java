@@ -254,8 +254,9 @@ public class Env
   private HashMap<String,Value> _scriptGlobalMap
     = new HashMap<String,Value>(16);
 
-  // Function map
+  // Function map, shared with the QuercusContext until the first write
   public AbstractFunction []_fun;
+  private boolean _isFunShared;
 
   // anonymous functions created by create_function()
   public HashMap<StringValue, AbstractFunction> _anonymousFunMap;
@@ -476,11 +477,9 @@ public class Env
     // XXX: grab initial from page
     // _defState = new DefinitionState(quercus);
 
-    AbstractFunction []defFuns = getDefaultFunctionMap();
-    _fun = _freeFunList.allocate();
-    if (_fun == null || _fun.length < defFuns.length)
-      _fun = new AbstractFunction[defFuns.length];
-    System.arraycopy(defFuns, 0, _fun, 0, defFuns.length);
+    // the default map is only copied when the page defines a function
+    _fun = getDefaultFunctionMap();
+    _isFunShared = true;
 
     ClassDef []defClasses = quercus.getClassDefMap();
 
@@ -4038,16 +4037,58 @@ public class Env
 
   public void updateFunction(int id, AbstractFunction fun)
   {
-    if (_fun.length <= id) {
-      AbstractFunction []oldFun = _fun;
+    if (id < _fun.length && _fun[id] != null)
+      return;
 
-      _fun = new AbstractFunction[id + 256];
-      System.arraycopy(oldFun, 0, _fun, 0, oldFun.length);
+    AbstractFunction []funMap = getWritableFunctionMap(id);
+
+    if (funMap[id] == null) {
+      funMap[id] = fun;
+    }
+  }
+
+  /**
+   * Sets the runtime function for the id, e.g. when resolving a lazy
+   * or namespace-fallback function.
+   */
+  public void setFunction(int id, AbstractFunction fun)
+  {
+    if (id < _fun.length && _fun[id] == fun)
+      return;
+
+    getWritableFunctionMap(id)[id] = fun;
+  }
+
+  /**
+   * Returns the env's own function map, copying the shared default map
+   * on the first write and growing it to include the id.
+   */
+  private AbstractFunction []getWritableFunctionMap(int id)
+  {
+    AbstractFunction []fun = _fun;
+
+    if (_isFunShared) {
+      AbstractFunction []funMap = _freeFunList.allocate();
+
+      if (funMap == null || funMap.length < fun.length)
+        funMap = new AbstractFunction[fun.length];
+
+      System.arraycopy(fun, 0, funMap, 0, fun.length);
+
+      fun = funMap;
+      _fun = fun;
+      _isFunShared = false;
     }
 
-    if (_fun[id] == null) {
-      _fun[id] = fun;
+    if (fun.length <= id) {
+      AbstractFunction []funMap = new AbstractFunction[id + 256];
+      System.arraycopy(fun, 0, funMap, 0, fun.length);
+
+      fun = funMap;
+      _fun = fun;
     }
+
+    return fun;
   }
 
   /*
@@ -4117,16 +4158,12 @@ public class Env
 
     // XXX: anonymous/generated functions(?), e.g. like foo2431
 
-    if (_fun.length <= id) {
-      AbstractFunction []funMap = new AbstractFunction[id + 256];
-      System.arraycopy(_fun, 0, funMap, 0, _fun.length);
-      _fun = funMap;
-    }
+    AbstractFunction []funMap = getWritableFunctionMap(id);
 
-    if (_fun[id] != null && ! (_fun[id] instanceof UndefinedFunction))
+    if (funMap[id] != null && ! (funMap[id] instanceof UndefinedFunction))
       throw new QuercusException(L.l("can't redefine function {0}", name));
 
-    _fun[id] = fun;
+    funMap[id] = fun;
 
     return BooleanValue.TRUE;
   }
@@ -4632,10 +4669,9 @@ public class Env
   public void restoreState(SaveState saveState)
   {
     AbstractFunction []fun = saveState.getFunctionList();
-    if (_fun.length < fun.length)
-      _fun = new AbstractFunction[fun.length];
+    AbstractFunction []funMap = getWritableFunctionMap(fun.length - 1);
 
-    System.arraycopy(fun, 0, _fun, 0, fun.length);
+    System.arraycopy(fun, 0, funMap, 0, fun.length);
 
     ClassDef []classDef = saveState.getClassDefList();
     if (_classDef.length < classDef.length)
@@ -7571,7 +7607,7 @@ public class Env
 
     AbstractFunction []fun = _fun;
     _fun = null;
-    if (fun != null) {
+    if (fun != null && ! _isFunShared) {
       boolean isUsed = false;
 
       /**
@@ -42,6 +42,10 @@ import java.util.Locale;
 /**
  * Represents a 8-bit PHP 5 style binary builder (unicode.semantics = off),
  * used for large data like file reads.
+ *
+ * The data is kept in fixed-size chunks. Since appends only write past
+ * the current length, filled chunks are shared between a builder and its
+ * copies; only the chunk index and the partial tail chunk are copied.
  */
 public class LargeStringBuilderValue
   extends StringValue
@@ -74,6 +78,29 @@ public class LargeStringBuilderValue
     s.appendTo(this);
   }
 
+  /**
+   * Creates a copy sharing the filled chunks of the original.
+   */
+  public LargeStringBuilderValue(LargeStringBuilderValue v)
+  {
+    int length = v._length;
+    int tailChunk = length / SIZE;
+
+    _bufferList = new byte[tailChunk + 32][];
+    System.arraycopy(v._bufferList, 0, _bufferList, 0, tailChunk);
+
+    int tail = length % SIZE;
+
+    if (tail > 0) {
+      byte []buffer = new byte[SIZE];
+      System.arraycopy(v._bufferList[tailChunk], 0, buffer, 0, tail);
+
+      _bufferList[tailChunk] = buffer;
+    }
+
+    _length = length;
+  }
+
   /**
    * Creates an empty string builder of the same type.
    */
@@ -215,9 +242,7 @@ public class LargeStringBuilderValue
   @Override
   public StringValue toStringBuilder()
   {
-    // XXX: can this just return this, or does it need to return a copy?
-
-    return new LargeStringBuilderValue(_bufferList, _length);
+    return new LargeStringBuilderValue(this);
   }
 
   /**
@@ -315,6 +340,20 @@ public class LargeStringBuilderValue
   @Override
   public final void setLength(int len)
   {
+    if (len < _length) {
+      // the new tail chunk may be shared with a copy, so it's replaced
+      // before any append can write into it
+      int tailChunk = len / SIZE;
+
+      byte []buffer = new byte[SIZE];
+      System.arraycopy(_bufferList[tailChunk], 0, buffer, 0, len % SIZE);
+      _bufferList[tailChunk] = buffer;
+
+      for (int i = tailChunk + 1; i < _bufferList.length; i++) {
+        _bufferList[i] = null;
+      }
+    }
+
     _length = len;
   }
 
@@ -465,7 +504,7 @@ public class LargeStringBuilderValue
   @Override
   public StringValue toStringBuilder(Env env)
   {
-    return new LargeStringBuilderValue(_bufferList, _length);
+    return new LargeStringBuilderValue(this);
   }
 
   /**
@@ -483,17 +522,7 @@ public class LargeStringBuilderValue
   @Override
   public StringValue append(String s)
   {
-    int len = s.length();
-
-    ensureCapacity(_length + len);
-
-    for (int i = 0; i < len; i++) {
-      _bufferList[_length / SIZE][_length % SIZE] = (byte) s.charAt(i);
-
-      _length++;
-    }
-
-    return this;
+    return append(s, 0, s.length());
   }
 
   /**
@@ -501,14 +530,22 @@ public class LargeStringBuilderValue
    */
   public StringValue append(CharSequence buf, int head, int tail)
   {
-    int len = tail - head;
+    ensureCapacity(_length + tail - head);
 
-    ensureCapacity(_length + len);
+    while (head < tail) {
+      byte []buffer = _bufferList[_length / SIZE];
+      int offset = _length % SIZE;
 
-    for (int i = 0; i < len; i++) {
-      _bufferList[_length / SIZE][_length % SIZE] = (byte) buf.charAt(i);
+      int sublen = SIZE - offset;
+      if (tail - head < sublen)
+        sublen = tail - head;
 
-      _length++;
+      for (int i = 0; i < sublen; i++) {
+        buffer[offset + i] = (byte) buf.charAt(head + i);
+      }
+
+      head += sublen;
+      _length += sublen;
     }
 
     return this;
@@ -522,10 +559,21 @@ public class LargeStringBuilderValue
   {
     ensureCapacity(_length + length);
 
-    for (int i = offset; i < length + offset; i++) {
-      _bufferList[_length / SIZE][_length % SIZE] = (byte) buf[i];
+    while (length > 0) {
+      byte []buffer = _bufferList[_length / SIZE];
+      int chunkOffset = _length % SIZE;
+
+      int sublen = SIZE - chunkOffset;
+      if (length < sublen)
+        sublen = length;
+
+      for (int i = 0; i < sublen; i++) {
+        buffer[chunkOffset + i] = (byte) buf[offset + i];
+      }
 
-      _length++;
+      offset += sublen;
+      length -= sublen;
+      _length += sublen;
     }
 
     return this;
@@ -654,7 +702,7 @@ public class LargeStringBuilderValue
       if (length < sublen)
         sublen = (int) length;
 
-      sublen = is.read(buffer, 0, sublen);
+      sublen = is.read(buffer, offset, sublen);
 
       if (sublen > 0) {
         _length += sublen;
@@ -778,11 +826,6 @@ public class LargeStringBuilderValue
 
   private void ensureCapacity(int newCapacity)
   {
-    if (newCapacity > 10000000) {
-      Thread.dumpStack();
-      throw new IllegalStateException();
-    }
-
     int chunk = _length / SIZE;
     int endChunk = newCapacity / SIZE;
 
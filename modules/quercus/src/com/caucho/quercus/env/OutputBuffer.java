@@ -127,7 +127,15 @@ public class OutputBuffer {
     try {
       _out.flush();
 
-      StringValue bb = _env.createBinaryBuilder(_tempStream.getLength());
+      int length = _tempStream.getLength();
+
+      // large buffers are chunked to avoid one multi-megabyte array
+      StringValue bb;
+
+      if (LargeStringBuilderValue.SIZE <= length && ! _env.isUnicodeSemantics())
+        bb = _env.createLargeBinaryBuilder();
+      else
+        bb = _env.createBinaryBuilder(length);
 
       for (TempBuffer ptr = _tempStream.getHead();
            ptr != null;
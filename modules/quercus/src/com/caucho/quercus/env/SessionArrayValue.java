@@ -168,6 +168,37 @@ public class SessionArrayValue extends ArrayValueWrapper
     }
   }
 
+  /**
+   * Compact binary encoding for the persistent store, or null if the
+   * session needs the text encoding, e.g. for objects.
+   */
+  public byte []encodeBinary(Env env)
+  {
+    ArrayValue array = getArray();
+
+    synchronized (array) {
+      return SessionBinaryCodec.encode(array);
+    }
+  }
+
+  /**
+   * Decodes binary encoded values, adding them to this object.
+   */
+  public boolean decodeBinary(Env env, byte []encoded)
+  {
+    ArrayValue array = getArray();
+
+    try {
+      synchronized (array) {
+        SessionBinaryCodec.decode(env, array, encoded);
+      }
+
+      return true;
+    } catch (IOException e) {
+      throw new QuercusModuleException(e);
+    }
+  }
+
   public boolean inUse()
   {
     return _useCount.get() > 0;
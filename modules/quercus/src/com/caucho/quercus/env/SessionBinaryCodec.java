@@ -0,0 +1,462 @@
+/*
+ * Copyright (c) 1998-2012 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Resin(R) Open Source
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Resin Open Source is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Resin Open Source is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Resin Open Source; if not, write to the
+ *
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ *
+ * @author Scott Ferguson
+ */
+
+package com.caucho.quercus.env;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+import com.caucho.util.L10N;
+
+/**
+ * Compact binary encoding of session arrays for the persistent store.
+ *
+ * Scalars and arrays are written with one-byte tags and varint lengths,
+ * and repeated strings, e.g. array keys, are written as back-references
+ * to their first occurrence. Sessions holding objects or shared
+ * references aren't encoded, so they keep the PHP text serialization
+ * and its __sleep/__wakeup semantics.
+ */
+final class SessionBinaryCodec {
+  private static final L10N L = new L10N(SessionBinaryCodec.class);
+
+  private static final int VERSION = 0x51;
+
+  private static final int NULL = 0;
+  private static final int FALSE = 1;
+  private static final int TRUE = 2;
+  private static final int LONG = 3;
+  private static final int DOUBLE = 4;
+  private static final int STRING = 5;
+  private static final int STRING_WIDE = 6;
+  private static final int UNICODE = 7;
+  private static final int STRING_REF = 8;
+  private static final int ARRAY = 9;
+
+  private byte []_buffer;
+  private int _offset;
+  private int _length;
+
+  // encode: string to back-reference index
+  private HashMap<StringValue,Integer> _stringMap;
+  // encode: vars already written, to detect references
+  private IdentityHashMap<Value,Value> _varMap;
+
+  // decode: back-reference strings
+  private ArrayList<StringValue> _stringList;
+
+  private SessionBinaryCodec(byte []buffer, int length)
+  {
+    _buffer = buffer;
+    _length = length;
+  }
+
+  /**
+   * Encodes the session entries, returning null if the session needs
+   * the text serialization.
+   */
+  static byte []encode(ArrayValue array)
+  {
+    SessionBinaryCodec codec = new SessionBinaryCodec(new byte[256], 0);
+
+    codec._stringMap = new HashMap<StringValue,Integer>();
+
+    codec.write(VERSION);
+    codec.writeInt(array.getSize());
+
+    for (ArrayValue.Entry entry = array.getHead();
+         entry != null;
+         entry = entry.getNext()) {
+      codec.writeChars(entry.getKey().toString());
+
+      if (! codec.writeValue(entry.getRawValue()))
+        return null;
+    }
+
+    byte []data = new byte[codec._offset];
+    System.arraycopy(codec._buffer, 0, data, 0, data.length);
+
+    return data;
+  }
+
+  /**
+   * Decodes the encoded entries, adding them to the session array.
+   */
+  static void decode(Env env, ArrayValue array, byte []data)
+    throws IOException
+  {
+    SessionBinaryCodec codec = new SessionBinaryCodec(data, data.length);
+
+    codec._stringList = new ArrayList<StringValue>();
+
+    if (codec.read() != VERSION)
+      throw new IOException(L.l("unknown session encoding"));
+
+    int size = codec.readInt();
+
+    for (int i = 0; i < size; i++) {
+      StringValue name = env.createUnicodeBuilder();
+      int len = codec.readInt();
+
+      for (int j = 0; j < len; j++) {
+        name.append(codec.readChar());
+      }
+
+      array.put(name, codec.readValue(env));
+    }
+  }
+
+  //
+  // encoding
+  //
+
+  private boolean writeValue(Value value)
+  {
+    if (value instanceof Var) {
+      if (_varMap == null)
+        _varMap = new IdentityHashMap<Value,Value>();
+
+      // a shared reference needs the text format's R: back-reference
+      if (_varMap.put(value, value) != null)
+        return false;
+
+      value = value.toValue();
+    }
+
+    if (value instanceof NullValue) {
+      write(NULL);
+    }
+    else if (value instanceof BooleanValue) {
+      write(value.toBoolean() ? TRUE : FALSE);
+    }
+    else if (value instanceof LongValue) {
+      write(LONG);
+      writeLong(value.toLong());
+    }
+    else if (value instanceof DoubleValue) {
+      write(DOUBLE);
+      writeRawLong(Double.doubleToRawLongBits(value.toDouble()));
+    }
+    else if (value instanceof StringValue) {
+      writeString((StringValue) value);
+    }
+    else if (value instanceof ArrayValue) {
+      ArrayValue array = (ArrayValue) value;
+
+      write(ARRAY);
+      writeInt(array.getSize());
+
+      for (ArrayValue.Entry entry = array.getHead();
+           entry != null;
+           entry = entry.getNext()) {
+        if (! writeValue(entry.getKey()) || ! writeValue(entry.getRawValue()))
+          return false;
+      }
+    }
+    else {
+      return false;
+    }
+
+    return true;
+  }
+
+  private void writeString(StringValue s)
+  {
+    boolean isUnicode = s instanceof UnicodeBuilderValue;
+
+    if (! isUnicode) {
+      Integer ref = _stringMap.get(s);
+
+      if (ref != null) {
+        write(STRING_REF);
+        writeInt(ref);
+        return;
+      }
+
+      _stringMap.put(s, _stringMap.size());
+    }
+
+    int len = s.length();
+    boolean isWide = isUnicode;
+
+    for (int i = 0; i < len && ! isWide; i++) {
+      isWide = s.charAt(i) > 0xff;
+    }
+
+    if (isUnicode)
+      write(UNICODE);
+    else if (isWide)
+      write(STRING_WIDE);
+    else
+      write(STRING);
+
+    writeInt(len);
+    ensureCapacity(2 * len);
+
+    byte []buffer = _buffer;
+    int offset = _offset;
+
+    for (int i = 0; i < len; i++) {
+      char ch = s.charAt(i);
+
+      if (isWide)
+        buffer[offset++] = (byte) (ch >> 8);
+
+      buffer[offset++] = (byte) ch;
+    }
+
+    _offset = offset;
+  }
+
+  private void writeChars(String s)
+  {
+    int len = s.length();
+
+    writeInt(len);
+
+    for (int i = 0; i < len; i++) {
+      writeInt(s.charAt(i));
+    }
+  }
+
+  /**
+   * Writes a zig-zag varint.
+   */
+  private void writeLong(long v)
+  {
+    v = (v << 1) ^ (v >> 63);
+
+    ensureCapacity(10);
+
+    while ((v & ~0x7fL) != 0) {
+      _buffer[_offset++] = (byte) (0x80 | (v & 0x7f));
+      v >>>= 7;
+    }
+
+    _buffer[_offset++] = (byte) v;
+  }
+
+  private void writeInt(int v)
+  {
+    ensureCapacity(5);
+
+    while ((v & ~0x7f) != 0) {
+      _buffer[_offset++] = (byte) (0x80 | (v & 0x7f));
+      v >>>= 7;
+    }
+
+    _buffer[_offset++] = (byte) v;
+  }
+
+  private void writeRawLong(long v)
+  {
+    ensureCapacity(8);
+
+    for (int i = 56; i >= 0; i -= 8) {
+      _buffer[_offset++] = (byte) (v >> i);
+    }
+  }
+
+  private void write(int v)
+  {
+    ensureCapacity(1);
+
+    _buffer[_offset++] = (byte) v;
+  }
+
+  private void ensureCapacity(int len)
+  {
+    if (_buffer.length < _offset + len) {
+      byte []buffer = new byte[Math.max(2 * _buffer.length, _offset + len)];
+      System.arraycopy(_buffer, 0, buffer, 0, _offset);
+
+      _buffer = buffer;
+    }
+  }
+
+  //
+  // decoding
+  //
+
+  private Value readValue(Env env)
+    throws IOException
+  {
+    int tag = read();
+
+    switch (tag) {
+    case NULL:
+      return NullValue.NULL;
+
+    case FALSE:
+      return BooleanValue.FALSE;
+
+    case TRUE:
+      return BooleanValue.TRUE;
+
+    case LONG:
+      return LongValue.create(readLong());
+
+    case DOUBLE:
+      return new DoubleValue(Double.longBitsToDouble(readRawLong()));
+
+    case STRING:
+    case STRING_WIDE:
+    case UNICODE:
+      return readString(env, tag);
+
+    case STRING_REF:
+      {
+        int ref = readInt();
+
+        if (ref < 0 || _stringList.size() <= ref)
+          throw new IOException(L.l("invalid string reference {0}", ref));
+
+        return _stringList.get(ref);
+      }
+
+    case ARRAY:
+      {
+        int size = readInt();
+
+        ArrayValue array = new ArrayValueImpl(size);
+
+        for (int i = 0; i < size; i++) {
+          Value key = readValue(env);
+          Value value = readValue(env);
+
+          array.put(key, value);
+        }
+
+        return array;
+      }
+
+    default:
+      throw new IOException(L.l("unknown session value tag {0}", tag));
+    }
+  }
+
+  private StringValue readString(Env env, int tag)
+    throws IOException
+  {
+    int len = readInt();
+
+    boolean isWide = tag != STRING;
+
+    if (len < 0 || _length < _offset + (isWide ? 2 * len : len))
+      throw new IOException(L.l("invalid string length {0}", len));
+
+    char []chars = new char[len];
+    byte []buffer = _buffer;
+    int offset = _offset;
+
+    for (int i = 0; i < len; i++) {
+      if (isWide) {
+        chars[i] = (char) (((buffer[offset] & 0xff) << 8)
+                           + (buffer[offset + 1] & 0xff));
+        offset += 2;
+      }
+      else
+        chars[i] = (char) (buffer[offset++] & 0xff);
+    }
+
+    _offset = offset;
+
+    if (tag == UNICODE)
+      return new UnicodeBuilderValue(chars, 0, len);
+
+    StringValue s = env.createString(chars, 0, len);
+
+    _stringList.add(s);
+
+    return s;
+  }
+
+  private char readChar()
+    throws IOException
+  {
+    return (char) readInt();
+  }
+
+  private long readLong()
+    throws IOException
+  {
+    long v = 0;
+
+    for (int shift = 0; shift < 64; shift += 7) {
+      int b = read();
+
+      v |= (long) (b & 0x7f) << shift;
+
+      if ((b & 0x80) == 0)
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    throw new IOException(L.l("invalid varint"));
+  }
+
+  private int readInt()
+    throws IOException
+  {
+    int v = 0;
+
+    for (int shift = 0; shift < 35; shift += 7) {
+      int b = read();
+
+      v |= (b & 0x7f) << shift;
+
+      if ((b & 0x80) == 0)
+        return v;
+    }
+
+    throw new IOException(L.l("invalid varint"));
+  }
+
+  private long readRawLong()
+    throws IOException
+  {
+    long v = 0;
+
+    for (int i = 0; i < 8; i++) {
+      v = (v << 8) + read();
+    }
+
+    return v;
+  }
+
+  private int read()
+    throws IOException
+  {
+    if (_length <= _offset)
+      throw new IOException(L.l("unexpected end of session data"));
+
+    return _buffer[_offset++] & 0xff;
+  }
+}
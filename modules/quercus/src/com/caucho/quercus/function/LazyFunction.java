@@ -101,7 +101,7 @@ public class LazyFunction extends AbstractFunction
 
       int id = _quercus.findFunctionId(env.createString(_name));
 
-      env._fun[id] = _fun;
+      env.setFunction(id, _fun);
 
       return _fun;
     } catch (Exception e) {
@@ -32,7 +32,6 @@ package com.caucho.quercus.lib;
 import com.caucho.quercus.env.*;
 import com.caucho.quercus.function.AbstractFunction;
 import com.caucho.util.L10N;
-import com.caucho.util.LruCache;
 
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -44,8 +43,9 @@ public final class UnserializeReader {
   private static final Logger log
     = Logger.getLogger(UnserializeReader.class.getName());
 
-  private static final LruCache<StringKey,StringValue> _keyCache
-    = new LruCache<StringKey,StringValue>(4096);
+  // direct-mapped key intern cache, read and written without locking
+  private static final int KEY_CACHE_SIZE = 4096;
+  private static final KeyEntry []_keyCache = new KeyEntry[KEY_CACHE_SIZE];
 
   private final char []_buffer;
   private final int _length;
@@ -655,9 +655,11 @@ public final class UnserializeReader {
         if (len < 32) {
           _key.init(_buffer, _index, len);
 
-          v = _keyCache.get(_key);
+          int hash = _key.hashCode() & (KEY_CACHE_SIZE - 1);
+          KeyEntry entry = _keyCache[hash];
 
-          if (v != null) {
+          if (entry != null && entry._key.equals(_key)) {
+            v = entry._value;
             _index += len;
           }
           else {
@@ -670,7 +672,7 @@ public final class UnserializeReader {
               v = readUnicodeValue(env, len);
             }
 
-            _keyCache.put(key, v);
+            _keyCache[hash] = new KeyEntry(key, v);
           }
         }
         else {
@@ -831,6 +833,18 @@ public final class UnserializeReader {
     _index--;
   }
 
+  static final class KeyEntry
+  {
+    final StringKey _key;
+    final StringValue _value;
+
+    KeyEntry(StringKey key, StringValue value)
+    {
+      _key = key;
+      _value = value;
+    }
+  }
+
   public final static class StringKey
   {
     char []_buffer;
@@ -190,6 +190,13 @@ public class Mysqli extends JdbcConnectionResource
     JdbcDriverContext driverContext = env.getQuercus().getJdbcDriverContext();
 
     try {
+      // mysqli persistent "p:" host, which maps to a pooled connection
+      if (host != null && host.startsWith("p:")) {
+        host = host.substring(2);
+
+        setPersistent();
+      }
+
       if (host == null || host.equals("")) {
         host = "localhost";
       }
@@ -39,6 +39,8 @@ import com.caucho.quercus.annotation.UsesSymbolTable;
 import com.caucho.quercus.env.*;
 import com.caucho.quercus.lib.i18n.MbstringModule;
 import com.caucho.quercus.module.AbstractQuercusModule;
+import com.caucho.quercus.module.IniDefinition;
+import com.caucho.quercus.module.IniDefinitions;
 import com.caucho.util.L10N;
 import com.caucho.util.LruCache;
 
@@ -56,6 +58,10 @@ public class RegexpModule
 
   private static final L10N L = new L10N(RegexpModule.class);
 
+  private static final IniDefinitions _iniDefinitions = new IniDefinitions();
+
+  private static final String LAST_ERROR = "caucho.preg_last_error";
+
   public static final int PREG_REPLACE_EVAL = 0x01;
   public static final int PCRE_UTF8 = 0x02;
 
@@ -106,6 +112,15 @@ public class RegexpModule
     return new String[] { "ereg", "pcre" };
   }
 
+  /**
+   * Returns the default php.ini values.
+   */
+  @Override
+  public IniDefinitions getIniDefinitions()
+  {
+    return _iniDefinitions;
+  }
+
   @Hide
   public static int getRegexpCacheSize()
   {
@@ -479,7 +494,30 @@ public class RegexpModule
    */
   public static Value preg_last_error(Env env)
   {
-    return LongValue.ZERO;
+    Object error = env.getSpecialValue(LAST_ERROR);
+
+    if (error != null)
+      return (Value) error;
+    else
+      return LongValue.ZERO;
+  }
+
+  static void setLastError(Env env, int error)
+  {
+    env.setSpecialValue(LAST_ERROR, LongValue.create(error));
+  }
+
+  static void clearLastError(Env env)
+  {
+    if (env.getSpecialValue(LAST_ERROR) != null)
+      env.setSpecialValue(LAST_ERROR, null);
+  }
+
+  static long getBacktrackLimit(Env env)
+  {
+    long limit = INI_PCRE_BACKTRACK_LIMIT.getAsLong(env);
+
+    return limit > 0 ? limit : Long.MAX_VALUE;
   }
 
   public static Value preg_match(Env env,
@@ -513,9 +551,15 @@ public class RegexpModule
         matchRef.set(regs);
       }
 
+      boolean isBacktrackLimit
+        = regexpState != null && regexpState.isBacktrackLimit();
+
       env.freeRegexpState(regexpState);
 
-      return LongValue.ZERO;
+      if (isBacktrackLimit)
+        return BooleanValue.FALSE;
+      else
+        return LongValue.ZERO;
     }
 
     boolean isOffsetCapture = (flags & PREG_OFFSET_CAPTURE) != 0;
@@ -658,6 +702,9 @@ public class RegexpModule
     else
       throw new UnsupportedOperationException();
 
+    if (regexpState != null && regexpState.isBacktrackLimit())
+      result = BooleanValue.FALSE;
+
     env.freeRegexpState(regexpState);
 
     return result;
@@ -1073,6 +1120,9 @@ public class RegexpModule
                                    string,
                                    limit,
                                    countV);
+
+        if (string == null)
+          break;
       }
     }
     else {
@@ -1083,6 +1133,9 @@ public class RegexpModule
                                    string,
                                    limit,
                                    countV);
+
+        if (string == null)
+          break;
       }
     }
 
@@ -1100,7 +1153,8 @@ public class RegexpModule
    * @param subject
    * @param limit
    * @param countV
-   * @return subject with everything replaced
+   * @return subject with everything replaced, or null if the match
+   * exceeded pcre.backtrack_limit
    */
   private static StringValue pregReplaceCallbackImpl(Env env,
                                                      Regexp regexp,
@@ -1164,7 +1218,9 @@ public class RegexpModule
       numberOfMatches++;
     }
 
-    if (tail < regexpState.getSubjectLength())
+    if (regexpState.isBacktrackLimit())
+      result = null;
+    else if (tail < regexpState.getSubjectLength())
       result = result.append(regexpState.substring(env, tail));
 
     env.freeRegexpState(regexpState);
@@ -1207,6 +1263,9 @@ public class RegexpModule
                                                countV,
                                                isEval);
 
+    if (regexpState.isBacktrackLimit())
+      result = null;
+
     env.freeRegexpState(regexpState);
 
     return result;
@@ -1543,12 +1602,17 @@ public class RegexpModule
       return env.getEmptyString();
     }
     else {
-      return pregReplaceCallbackImpl(env,
-                                     regexp,
-                                     fun,
-                                     subject,
-                                     limit,
-                                     countV);
+      StringValue result = pregReplaceCallbackImpl(env,
+                                                   regexp,
+                                                   fun,
+                                                   subject,
+                                                   limit,
+                                                   countV);
+
+      if (result != null)
+        return result;
+      else
+        return NullValue.NULL;
     }
   }
 
@@ -1577,6 +1641,9 @@ public class RegexpModule
                                           subject,
                                           limit,
                                           countV);
+
+        if (subject == null)
+          return NullValue.NULL;
       }
 
       return subject;
@@ -1712,6 +1779,12 @@ public class RegexpModule
       }
     }
 
+    if (regexpState.isBacktrackLimit()) {
+      env.freeRegexpState(regexpState);
+
+      return BooleanValue.FALSE;
+    }
+
     // Append non-matching sequence at the end
     if (count < limit
         && (head < regexpState.getSubjectLength() || allowEmpty)) {
@@ -1880,6 +1953,12 @@ public class RegexpModule
 
       boolean found = regexpState.find(env, entryValue.toStringValue());
 
+      if (regexpState.isBacktrackLimit()) {
+        env.freeRegexpState(regexpState);
+
+        return BooleanValue.FALSE;
+      }
+
       if (! found && flag == PREG_GREP_INVERT)
         matchArray.append(entryKey, entryValue);
       else if (found && flag != PREG_GREP_INVERT)
@@ -2498,4 +2577,7 @@ public class RegexpModule
     PREG_QUOTE['-'] = true; // php/153w
 
   }
+
+  static final IniDefinition INI_PCRE_BACKTRACK_LIMIT
+    = _iniDefinitions.add("pcre.backtrack_limit", 1000000, PHP_INI_ALL);
 }
@@ -695,6 +695,9 @@ class RegexpNode {
 
         if (tail >= 0)
           return tail;
+
+        if (! state.backtrack())
+          return -1;
       }
 
       return -1;
@@ -818,6 +821,9 @@ class RegexpNode {
         if (tail >= 0)
           return tail;
 
+        if (! state.backtrack())
+          return -1;
+
         if (node.match(string, length, offset + i, state) < 0) {
           return -1;
         }
@@ -1827,6 +1833,9 @@ class RegexpNode {
 
           state._loopCount[_index] = oldCount;
           state._loopOffset[_index] = oldOffset;
+
+          if (! state.backtrack())
+            return -1;
         }
       }
 
@@ -2032,6 +2041,9 @@ class RegexpNode {
       if (tail >= 0)
         return tail;
 
+      if (! state.backtrack())
+        return -1;
+
       if (i + 1 < _head._max) {
         state._loopCount[_index] = i + 1;
         state._loopOffset[_index] = offset;
@@ -2176,6 +2188,9 @@ class RegexpNode {
 
         if (value >= 0)
           return value;
+
+        if (! state.backtrack())
+          return -1;
       }
 
       return -1;
@@ -3203,12 +3218,6 @@ class RegexpNode {
       return null;
     }
 
-    @Override
-    String prefix()
-    {
-      return new String(_buffer, 0, _length);
-    }
-
     //
     // match function
     //
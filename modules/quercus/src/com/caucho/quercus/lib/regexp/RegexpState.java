@@ -74,6 +74,13 @@ public class RegexpState {
   int []_loopCount;
   int []_loopOffset;
 
+  private Env _env;
+
+  // pcre.backtrack_limit budget for a single match
+  private long _backtrackLimit;
+  private long _backtrackCount;
+  private boolean _isBacktrackLimit;
+
   private RegexpState()
   {
     int size = 32;
@@ -134,6 +141,9 @@ public class RegexpState {
 
     _isUTF8 = false;
     _isEval = false;
+
+    _backtrackCount = 0;
+    _isBacktrackLimit = false;
   }
 
   public static RegexpState create(Env env, Regexp regexp)
@@ -145,6 +155,10 @@ public class RegexpState {
 
     state.init(regexp);
 
+    state._env = env;
+    state._backtrackLimit = RegexpModule.getBacktrackLimit(env);
+    RegexpModule.clearLastError(env);
+
     return state;
   }
 
@@ -159,6 +173,8 @@ public class RegexpState {
 
   public static void free(Env env, RegexpState state)
   {
+    state._env = null;
+
     env.freeRegexpState(state);
   }
 
@@ -189,6 +205,8 @@ public class RegexpState {
 
       int minLength = _regexp._minLength;
       boolean []firstSet = _regexp._firstSet;
+      CharBuffer prefix = _regexp._prefix;
+      int prefixLength = prefix.length();
 
       if (_subject == null)
         return false;
@@ -196,6 +214,8 @@ public class RegexpState {
       StringValue subject = _subject;
       int length = _subjectLength;
 
+      startMatch();
+
       /* php/4e85 XXX: optim doesn't work for greedy loops
       if (_regexp._isAnchorBegin) {
         if (_first + minLength <= length)
@@ -204,7 +224,13 @@ public class RegexpState {
       */
 
       for (; _first + minLength <= length; _first++) {
-        if (firstSet != null && _first < length) {
+        if (prefixLength > 0) {
+          _first = findPrefix(subject, prefix, _first, length - minLength);
+
+          if (_first < 0)
+            break;
+        }
+        else if (firstSet != null && _first < length) {
           char firstChar = subject.charAt(_first);
 
           if (firstChar < 256 && ! firstSet[firstChar])
@@ -214,7 +240,11 @@ public class RegexpState {
         clearGroup();
         int offset = _regexp._prog.match(subject, length, _first, this);
 
-        if (offset >= 0) {
+        if (_isBacktrackLimit) {
+          onBacktrackLimit();
+          break;
+        }
+        else if (offset >= 0) {
           _groupBegin[0] = _first;
           _groupEnd[0] = offset;
 
@@ -278,8 +308,17 @@ public class RegexpState {
 
       _first = first;
       clearGroup();
+      startMatch();
 
-      return _regexp._prog.match(_subject, _subjectLength, first, this);
+      int offset = _regexp._prog.match(_subject, _subjectLength, first, this);
+
+      if (_isBacktrackLimit) {
+        onBacktrackLimit();
+
+        return -1;
+      }
+
+      return offset;
     } catch (StackOverflowError e) {
       log.warning(L.l("regexp '{0}' produces a StackOverflowError for\n{1}",
                       _regexp, subject));
@@ -318,14 +357,24 @@ public class RegexpState {
 
       int minLength = _regexp._minLength;
       boolean []firstSet = _regexp._firstSet;
+      CharBuffer prefix = _regexp._prefix;
+      int prefixLength = prefix.length();
       int end = subjectLength - minLength;
       RegexpNode prog = _regexp._prog;
 
       if (_regexp._isAnchorBegin)
         end = start;
 
+      startMatch();
+
       for (; start <= end; start++) {
-        if (firstSet != null && (start < end || minLength > 0)) {
+        if (prefixLength > 0) {
+          start = findPrefix(subject, prefix, start, end);
+
+          if (start < 0)
+            break;
+        }
+        else if (firstSet != null && (start < end || minLength > 0)) {
           char firstChar = subject.charAt(start);
 
           if (firstChar < 256 && ! firstSet[firstChar])
@@ -334,7 +383,11 @@ public class RegexpState {
 
         int value = prog.match(subject, subjectLength, start, this);
 
-        if (value >= 0) {
+        if (_isBacktrackLimit) {
+          onBacktrackLimit();
+          break;
+        }
+        else if (value >= 0) {
           _groupBegin[0] = start;
           _groupEnd[0] = value;
 
@@ -352,6 +405,66 @@ public class RegexpState {
     }
   }
 
+  /**
+   * Returns the first offset in [start, end] where the regexp's literal
+   * prefix matches, or -1, so the matcher only runs at candidate offsets.
+   */
+  private static int findPrefix(StringValue subject, CharBuffer prefix,
+                                int start, int end)
+  {
+    char []buffer = prefix.getBuffer();
+    int length = prefix.length();
+    char ch = buffer[0];
+
+    for (; start <= end; start++) {
+      start = subject.indexOf(ch, start);
+
+      if (start < 0 || end < start)
+        return -1;
+
+      if (subject.regionMatches(start, buffer, 0, length))
+        return start;
+    }
+
+    return -1;
+  }
+
+  private void startMatch()
+  {
+    _backtrackCount = 0;
+    _isBacktrackLimit = false;
+  }
+
+  /**
+   * Counts a backtracking step, returning false when the
+   * pcre.backtrack_limit budget is exhausted.
+   */
+  final boolean backtrack()
+  {
+    if (++_backtrackCount <= _backtrackLimit)
+      return true;
+
+    _isBacktrackLimit = true;
+
+    return false;
+  }
+
+  public boolean isBacktrackLimit()
+  {
+    return _isBacktrackLimit;
+  }
+
+  private void onBacktrackLimit()
+  {
+    if (log.isLoggable(Level.FINE))
+      log.fine(L.l("regexp '{0}' exceeded pcre.backtrack_limit {1}",
+                   _regexp, _backtrackLimit));
+
+    if (_env != null)
+      RegexpModule.setLastError(_env,
+                                RegexpModule.PREG_BACKTRACK_LIMIT_ERROR);
+  }
+
   private void clearGroup()
   {
     _groupLength = 0;
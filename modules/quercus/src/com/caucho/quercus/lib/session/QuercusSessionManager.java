@@ -442,7 +442,12 @@ public class QuercusSessionManager
     session.finish();
 
     if (_persistentStore != null) {
-      _persistentStore.put(session.getId(), copy.encode(env));
+      byte []encoded = copy.encodeBinary(env);
+
+      if (encoded != null)
+        _persistentStore.put(session.getId(), encoded);
+      else
+        _persistentStore.put(session.getId(), copy.encode(env));
     }
   }
 
@@ -496,10 +501,13 @@ public class QuercusSessionManager
       }
 
       if (_persistentStore != null) {
-        String encoded = (String) _persistentStore.get(session.getId());
+        Object encoded = _persistentStore.get(session.getId());
 
-        if (encoded != null) {
-          session.decode(env, new StringBuilderValue(encoded));
+        if (encoded instanceof byte[]) {
+          session.decodeBinary(env, (byte []) encoded);
+        }
+        else if (encoded != null) {
+          session.decode(env, new StringBuilderValue((String) encoded));
         }
       }
       
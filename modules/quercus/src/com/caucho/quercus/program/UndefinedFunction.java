@@ -64,7 +64,7 @@ public class UndefinedFunction extends AbstractFunction {
   {
     if (_globalId > 0) {
       AbstractFunction fun = env._fun[_globalId];
-      env._fun[_id] = fun;
+      env.setFunction(_id, fun);
 
       return fun.call(env, args);
     }
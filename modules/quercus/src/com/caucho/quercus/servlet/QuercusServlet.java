@@ -85,6 +85,7 @@ public class QuercusServlet
   private int _pageCacheSize = -1;
   private int _regexpCacheSize = -1;
   private boolean _isConnectionPool = true;
+  private int _preparedStatementCacheSize = -1;
   private String _iniPath;
   private String _scriptEncoding;
   private String _mysqlVersion;
@@ -279,6 +280,14 @@ public class QuercusServlet
     _isConnectionPool = isEnable;
   }
 
+  /**
+   * Sets the prepared statement cache size for pooled connections.
+   */
+  public void setPreparedStatementCacheSize(int size)
+  {
+    _preparedStatementCacheSize = size;
+  }
+
   /**
    * Adds a quercus module.
    */
@@ -454,6 +463,9 @@ public class QuercusServlet
     else if ("connection-pool".equals(paramName)) {
       setConnectionPool("true".equals(paramValue));
     }
+    else if ("prepared-statement-cache-size".equals(paramName)) {
+      setPreparedStatementCacheSize(Integer.parseInt(paramValue));
+    }
     else if ("require-source".equals(paramName)) {
       setRequireSource("true".equals(paramValue));
     }
@@ -523,6 +535,9 @@ public class QuercusServlet
     quercus.setRegexpCacheSize(_regexpCacheSize);
     quercus.setConnectionPool(_isConnectionPool);
 
+    if (_preparedStatementCacheSize >= 0)
+      quercus.setPreparedStatementCacheSize(_preparedStatementCacheSize);
+
     if (_dependencyCheckInterval != null) {
       quercus.setDependencyCheckInterval(_dependencyCheckInterval);
     }
@@ -28,6 +28,8 @@
 
 package com.caucho.amber;
 
+import com.caucho.amber.query.QueryResultIterator;
+
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.sql.ResultSet;
@@ -158,6 +160,13 @@ public interface AmberQuery {
            IllegalAccessException,
            InvocationTargetException;
 
+  /**
+   * Execute the query, returning a cursor-backed iterator which
+   * detaches entities as it advances.
+   */
+  public QueryResultIterator iterator(int fetchSize)
+    throws SQLException;
+
   /**
    * Sets the load on query.
    */
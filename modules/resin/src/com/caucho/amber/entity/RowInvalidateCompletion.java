@@ -58,6 +58,14 @@ public class RowInvalidateCompletion implements AmberCompletion {
     _key = key;
   }
 
+  /**
+   * Returns the invalidated table.
+   */
+  public String getTable()
+  {
+    return _table;
+  }
+
   /**
    * Code when the transaction completes.
    *
@@ -996,7 +996,7 @@ abstract public class AmberMappedComponent extends ClassComponent {
     _entityType.getId().generateSet(out, "pstmt", "index");
 
     out.println();
-    out.println("pstmt.executeUpdate();");
+    out.println("__caucho_session.executeUpdate(pstmt);");
 
     out.println();
     generateLogFine(out, " amber update");
@@ -1319,7 +1319,11 @@ abstract public class AmberMappedComponent extends ClassComponent {
     _entityType.generateInsertSet(out, table, "pstmt", "index", "super");
 
     out.println();
-    out.println("pstmt.executeUpdate();");
+    // generated keys need the insert executed immediately
+    out.println("if (__caucho_home.isIdentityGenerator())");
+    out.println("  pstmt.executeUpdate();");
+    out.println("else");
+    out.println("  aConn.executeUpdate(pstmt);");
 
     out.println();
     _entityType.getId().generateSetGeneratedKeys(out, "pstmt");
@@ -1345,7 +1349,7 @@ abstract public class AmberMappedComponent extends ClassComponent {
         parentType.generateInsertSet(out, subTable, "pstmt", "index", "super");
 
         out.println();
-        out.println("pstmt.executeUpdate();");
+        out.println("aConn.executeUpdate(pstmt);");
 
         out.println();
         parentType.getId().generateSetGeneratedKeys(out, "pstmt");
@@ -152,6 +152,7 @@ public class EntityComponent extends AmberMappedComponent {
     id.generateSet(out, "pstmt", "index", "this");
 
     out.println();
+    // deletes aren't batched, so postRemove follows the actual delete
     out.println("pstmt.executeUpdate();");
 
     out.println("__caucho_home.postRemove(this);");
@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 1998-2012 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Resin(R) Open Source
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Resin Open Source is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Resin Open Source is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Resin Open Source; if not, write to the
+ *
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ *
+ * @author Scott Ferguson
+ */
+
+package com.caucho.amber.manager;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.caucho.amber.entity.AmberCompletion;
+import com.caucho.amber.entity.RowInvalidateCompletion;
+import com.caucho.amber.entity.TableInvalidateCompletion;
+import com.caucho.distcache.ClusterCache;
+import com.caucho.server.distcache.CacheImpl;
+import com.caucho.util.Alarm;
+import com.caucho.util.AlarmListener;
+import com.caucho.util.RandomUtil;
+import com.caucho.util.WeakAlarm;
+
+/**
+ * Cluster-coherent invalidation for the persistence unit caches.
+ *
+ * Each table has a version stamp in a cluster cache. Committed table
+ * and row invalidations publish a new stamp for the table, and an alarm
+ * polls the stamps, invalidating the local entity and query caches
+ * for tables changed by other servers.
+ *
+ * The poll runs at a fraction of the table cache timeout, so a remote
+ * change is seen well before the cached entities would expire.
+ */
+class AmberClusterCache implements AlarmListener {
+  private static final Logger log
+    = Logger.getLogger(AmberClusterCache.class.getName());
+
+  private final AmberPersistenceUnit _unit;
+  private final long _pollInterval;
+
+  private final CacheImpl<String,Long> _versionCache;
+
+  // last known version for each table
+  private final ConcurrentHashMap<String,Long> _versionMap
+    = new ConcurrentHashMap<String,Long>();
+
+  private Alarm _alarm;
+  private volatile boolean _isClosed;
+
+  AmberClusterCache(AmberPersistenceUnit unit)
+  {
+    _unit = unit;
+    _pollInterval = Math.max(unit.getTableCacheTimeout() / 4, 100);
+
+    ClusterCache cache = new ClusterCache();
+    cache.setName("resin:amber:" + unit.getName());
+    cache.setLocalExpireTimeoutMillis(100);
+
+    _versionCache = cache.createIfAbsent();
+  }
+
+  /**
+   * Loads the current table versions and starts polling.
+   */
+  void start()
+  {
+    for (String table : _unit.getTableNames()) {
+      Long version = _versionCache.get(table);
+
+      if (version != null)
+        _versionMap.put(table, version);
+    }
+
+    _alarm = new WeakAlarm(this);
+    _alarm.queue(_pollInterval);
+  }
+
+  /**
+   * Publishes new versions for the tables changed by a commit.
+   *
+   * If the replaced version isn't the last one this server saw, another
+   * server changed the table since the last poll, and the table is
+   * invalidated here since the poll will only see the new version.
+   */
+  void publish(ArrayList<AmberCompletion> completions)
+  {
+    String lastTable = null;
+    ArrayList<AmberCompletion> remoteCompletions = null;
+
+    for (int i = 0; i < completions.size(); i++) {
+      AmberCompletion completion = completions.get(i);
+      String table;
+
+      if (completion instanceof TableInvalidateCompletion)
+        table = ((TableInvalidateCompletion) completion).getTable();
+      else if (completion instanceof RowInvalidateCompletion)
+        table = ((RowInvalidateCompletion) completion).getTable();
+      else
+        continue;
+
+      if (table.equals(lastTable))
+        continue;
+
+      lastTable = table;
+
+      Long version = RandomUtil.getRandomLong();
+
+      Long oldVersion = _versionMap.put(table, version);
+
+      try {
+        Long cacheVersion = (Long) _versionCache.getAndPut(table, version);
+
+        if (cacheVersion != null && ! cacheVersion.equals(oldVersion)) {
+          if (remoteCompletions == null)
+            remoteCompletions = new ArrayList<AmberCompletion>();
+
+          remoteCompletions.add(new TableInvalidateCompletion(table));
+        }
+      } catch (Exception e) {
+        log.log(Level.WARNING, e.toString(), e);
+      }
+    }
+
+    if (remoteCompletions != null) {
+      if (log.isLoggable(Level.FINE))
+        log.fine(this + " invalidating " + remoteCompletions);
+
+      _unit.completeLocal(remoteCompletions);
+    }
+  }
+
+  /**
+   * Invalidates tables whose version was changed by another server.
+   */
+  @Override
+  public void handleAlarm(Alarm alarm)
+  {
+    if (_isClosed)
+      return;
+
+    try {
+      ArrayList<AmberCompletion> completions = null;
+
+      for (String table : _unit.getTableNames()) {
+        Long version = _versionCache.get(table);
+
+        if (version == null)
+          continue;
+
+        Long oldVersion = _versionMap.put(table, version);
+
+        if (! version.equals(oldVersion)) {
+          if (completions == null)
+            completions = new ArrayList<AmberCompletion>();
+
+          completions.add(new TableInvalidateCompletion(table));
+        }
+      }
+
+      if (completions != null) {
+        if (log.isLoggable(Level.FINE))
+          log.fine(this + " invalidating " + completions);
+
+        _unit.completeLocal(completions);
+      }
+    } catch (Exception e) {
+      log.log(Level.FINE, e.toString(), e);
+    } finally {
+      if (! _isClosed)
+        alarm.queue(_pollInterval);
+    }
+  }
+
+  void close()
+  {
+    _isClosed = true;
+
+    Alarm alarm = _alarm;
+
+    if (alarm != null)
+      alarm.dequeue();
+  }
+
+  @Override
+  public String toString()
+  {
+    return getClass().getSimpleName() + "[" + _unit.getName() + "]";
+  }
+}
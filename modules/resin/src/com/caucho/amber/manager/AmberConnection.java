@@ -37,8 +37,11 @@ import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -151,6 +154,11 @@ public class AmberConnection
 
   private boolean _isFlushAllowed = true;
 
+  // true while flush batches inserts, updates and deletes
+  private boolean _isBatchFlush;
+  private PreparedStatement _batchStatement;
+  private int _batchCount;
+
   /**
    * Creates a manager instance.
    */
@@ -2014,6 +2022,8 @@ public class AmberConnection
   public PreparedStatement prepareStatement(String sql)
     throws SQLException
   {
+    flushBatch(sql);
+
     try {
       PreparedStatement pstmt = _preparedStatementMap.get(sql);
 
@@ -2044,6 +2054,87 @@ public class AmberConnection
     }
   }
 
+  /**
+   * Executes an insert or update. During flush, consecutive
+   * executions of the same statement are sent as a single JDBC batch.
+   */
+  public void executeUpdate(PreparedStatement pstmt)
+    throws SQLException
+  {
+    int batchSize = _persistenceUnit.getJdbcBatchSize();
+
+    if (! _isBatchFlush || batchSize <= 1) {
+      pstmt.executeUpdate();
+      return;
+    }
+
+    if (_batchStatement != pstmt)
+      flushBatch();
+
+    pstmt.addBatch();
+
+    _batchStatement = pstmt;
+    _batchCount++;
+
+    if (batchSize <= _batchCount)
+      flushBatch();
+  }
+
+  /**
+   * Executes the pending batch unless it's for the given statement.
+   */
+  private void flushBatch(String sql)
+    throws SQLException
+  {
+    PreparedStatement batchStatement = _batchStatement;
+
+    if (batchStatement != null
+        && batchStatement != _preparedStatementMap.get(sql)) {
+      flushBatch();
+    }
+  }
+
+  /**
+   * Executes the pending batch.
+   */
+  public void flushBatch()
+    throws SQLException
+  {
+    PreparedStatement pstmt = _batchStatement;
+    int count = _batchCount;
+
+    _batchStatement = null;
+    _batchCount = 0;
+
+    if (pstmt == null)
+      return;
+
+    if (log.isLoggable(Level.FINER))
+      log.finer(this + " executing batch of " + count + " statements");
+
+    pstmt.executeBatch();
+
+    _persistenceUnit.addBatchStatistics(count);
+  }
+
+  /**
+   * Discards the pending batch after a failure.
+   */
+  private void clearBatch()
+  {
+    PreparedStatement pstmt = _batchStatement;
+
+    _batchStatement = null;
+    _batchCount = 0;
+
+    try {
+      if (pstmt != null)
+        pstmt.clearBatch();
+    } catch (SQLException e) {
+      log.log(Level.FINER, e.toString(), e);
+    }
+  }
+
   /**
    * Closes a statement.
    */
@@ -2052,7 +2143,14 @@ public class AmberConnection
   {
     PreparedStatement pstmt = _preparedStatementMap.remove(sql);
 
-    if (pstmt != null) {
+    if (pstmt == null)
+      return;
+
+    try {
+      // queued rows are executed, not dropped, before the close
+      if (pstmt == _batchStatement)
+        flushBatch();
+    } finally {
       _statements.remove(pstmt);
 
       pstmt.close();
@@ -2078,6 +2176,8 @@ public class AmberConnection
   {
     PreparedStatement pstmt = null;
 
+    flushBatch(sql);
+
     try {
       pstmt = _preparedStatementMap.get(sql);
 
@@ -2529,6 +2629,9 @@ public class AmberConnection
       }
     }
 
+    _batchStatement = null;
+    _batchCount = 0;
+
     try {
       _preparedStatementMap.clear();
       _statements.clear();
@@ -2805,6 +2908,93 @@ public class AmberConnection
     return (Entity) entity;
   }
 
+  /**
+   * Returns the mark for entities added to the context, used with
+   * detachEntities by streaming queries.
+   */
+  public int getEntityMark()
+  {
+    return _entitiesTop;
+  }
+
+  /**
+   * Returns the mark for transaction entities, used with detachEntities
+   * by streaming queries.
+   */
+  public int getTxEntityMark()
+  {
+    return _txEntitiesTop;
+  }
+
+  /**
+   * Detaches the entities added to the context after the mark.  Inside
+   * a transaction, the entities are also removed from the transaction
+   * unless they've been modified or their persist or remove is pending.
+   * Only the entries after the marks are examined, so the cost depends
+   * on the row, not the number of rows already read.
+   */
+  public void detachEntities(int mark, int txMark)
+  {
+    if (_entitiesTop <= mark)
+      return;
+
+    Entity []entities = _entities;
+
+    Set<Entity> rowSet
+      = Collections.newSetFromMap(new IdentityHashMap<Entity,Boolean>());
+
+    for (int i = mark; i < _entitiesTop; i++) {
+      rowSet.add(entities[i]);
+    }
+
+    Set<Entity> keepSet = null;
+
+    Entity []txEntities = _txEntities;
+    int txTop = Math.min(txMark, _txEntitiesTop);
+
+    for (int i = txTop; i < _txEntitiesTop; i++) {
+      Entity entity = txEntities[i];
+
+      if (! rowSet.contains(entity)) {
+        txEntities[txTop++] = entity;
+      }
+      else if (entity.__caucho_isDirty()
+               || entity.__caucho_getEntityState() != EntityState.P_TRANSACTIONAL) {
+        txEntities[txTop++] = entity;
+
+        if (keepSet == null) {
+          keepSet
+            = Collections.newSetFromMap(new IdentityHashMap<Entity,Boolean>());
+        }
+
+        keepSet.add(entity);
+      }
+    }
+
+    for (int i = txTop; i < _txEntitiesTop; i++) {
+      txEntities[i] = null;
+    }
+
+    _txEntitiesTop = txTop;
+
+    int top = mark;
+
+    for (int i = mark; i < _entitiesTop; i++) {
+      Entity entity = entities[i];
+
+      if (keepSet != null && keepSet.contains(entity))
+        entities[top++] = entity;
+      else
+        entity.__caucho_detach();
+    }
+
+    for (int i = top; i < _entitiesTop; i++) {
+      entities[i] = null;
+    }
+
+    _entitiesTop = top;
+  }
+
   /**
    * Detach after non-xa.
    */
@@ -2867,27 +3057,56 @@ public class AmberConnection
     //
     // 3. Delete is done in descending order: C(2) -> B(1) -> A(0)
 
-    // Persists in ascending order.
-    for (int i = 0; i < _txEntitiesTop; i++) {
-      Entity entity = _txEntities[i];
+    // Statements are batched in flush order, so the FK-safe order
+    // is kept. A batch only groups consecutive executions of the
+    // same statement.
+    boolean isBatchFlush = _isBatchFlush;
+    _isBatchFlush = true;
 
-      if (entity.__caucho_getEntityState().isPersist()) {
-        try {
-          entity.__caucho_flush();
-        } catch (SQLException e) {
-          throwPersistException(e, entity);
+    boolean isValid = false;
+
+    try {
+      Entity lastEntity = null;
+
+      // Persists in ascending order.
+      for (int i = 0; i < _txEntitiesTop; i++) {
+        Entity entity = _txEntities[i];
+
+        if (entity.__caucho_getEntityState().isPersist()) {
+          try {
+            entity.__caucho_flush();
+          } catch (SQLException e) {
+            throwPersistException(e, entity);
+          }
+
+          lastEntity = entity;
         }
       }
-    }
 
-    // jpa/0h25
-    // Deletes in descending order.
-    for (int i = _txEntitiesTop - 1; i >= 0; i--) {
-      Entity entity = _txEntities[i];
+      try {
+        flushBatch();
+      } catch (SQLException e) {
+        throwPersistException(e, lastEntity);
+      }
 
-      if (! entity.__caucho_getEntityState().isPersist()) {
-        entity.__caucho_flush();
+      // jpa/0h25
+      // Deletes in descending order.
+      for (int i = _txEntitiesTop - 1; i >= 0; i--) {
+        Entity entity = _txEntities[i];
+
+        if (! entity.__caucho_getEntityState().isPersist()) {
+          entity.__caucho_flush();
+        }
       }
+
+      flushBatch();
+
+      isValid = true;
+    } finally {
+      _isBatchFlush = isBatchFlush;
+
+      if (! isValid)
+        clearBatch();
     }
 
     if (! isInTransaction()) {
@@ -896,6 +896,24 @@ public class AmberContainer implements ScanListener, EnvironmentListener {
 
     unit.setJPA(true);
 
+    Properties props = info.getProperties();
+
+    if (props != null
+        && "true".equals(props.getProperty("resin.cluster-cache"))) {
+      unit.setClusterCache(true);
+    }
+
+    String batchSize = props != null ? props.getProperty("resin.jdbc-batch-size") : null;
+
+    if (batchSize != null) {
+      try {
+        unit.setJdbcBatchSize(Integer.parseInt(batchSize.trim()));
+      } catch (NumberFormatException e) {
+        throw new ConfigException(L.l("resin.jdbc-batch-size '{0}' must be an integer",
+                                      batchSize));
+      }
+    }
+
     if (info.getJtaDataSource() != null)
       unit.setJtaDataSource(info.getJtaDataSource());
 
@@ -1048,6 +1066,17 @@ public class AmberContainer implements ScanListener, EnvironmentListener {
     }
   }
 
+  @Override
+  public boolean isRootScanCandidate(Path root, String packageRoot)
+  {
+    if (! root.lookup("META-INF/persistence.xml").canRead())
+      return false;
+
+    RootContext context = _persistenceRootMap.get(root);
+
+    return context == null || ! context.isScanComplete();
+  }
+
   @Override
   public ScanClass scanClass(Path root, String packageRoot,
                              String className, int modifiers)
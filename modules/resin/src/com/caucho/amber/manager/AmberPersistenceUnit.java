@@ -70,6 +70,8 @@ import java.lang.ref.SoftReference;
 import java.lang.reflect.Method;
 import java.sql.ResultSetMetaData;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -119,13 +121,24 @@ public class AmberPersistenceUnit {
   // private long _tableCacheTimeout = 250;
   private long _tableCacheTimeout = 2000;
 
+  // true if cache invalidation is shared with the cluster
+  private boolean _isClusterCache;
+  private AmberClusterCache _clusterCache;
+
+  // max statements in a flush batch
+  private int _jdbcBatchSize = 32;
+
+  private final AtomicLong _batchCountTotal = new AtomicLong();
+  private final AtomicLong _batchStatementCountTotal = new AtomicLong();
+
   private TypeManager _typeManager = new TypeManager();
 
   // loader override for ejb
   private ClassLoader _enhancedLoader;
 
-  private HashMap<String,AmberTable> _tableMap
-    = new HashMap<String,AmberTable>();
+  // read by the cluster cache poller as well as the config thread
+  private final ConcurrentHashMap<String,AmberTable> _tableMap
+    = new ConcurrentHashMap<String,AmberTable>();
 
   private HashMap<String,AmberEntityHome> _entityHomeMap
     = new HashMap<String,AmberEntityHome>();
@@ -452,6 +465,64 @@ public class AmberPersistenceUnit {
     return _tableCacheTimeout;
   }
 
+  /**
+   * Set true to share cache invalidation with the cluster.
+   */
+  public void setClusterCache(boolean isClusterCache)
+  {
+    _isClusterCache = isClusterCache;
+  }
+
+  /**
+   * Returns true if cache invalidation is shared with the cluster.
+   */
+  public boolean isClusterCache()
+  {
+    return _isClusterCache;
+  }
+
+  /**
+   * Sets the max number of statements in a flush batch, 1 to disable
+   * batching.
+   */
+  public void setJdbcBatchSize(int size)
+  {
+    _jdbcBatchSize = size;
+  }
+
+  /**
+   * Returns the max number of statements in a flush batch.
+   */
+  public int getJdbcBatchSize()
+  {
+    return _jdbcBatchSize;
+  }
+
+  /**
+   * Records an executed flush batch.
+   */
+  void addBatchStatistics(int statementCount)
+  {
+    _batchCountTotal.incrementAndGet();
+    _batchStatementCountTotal.addAndGet(statementCount);
+  }
+
+  /**
+   * Returns the total number of executed flush batches.
+   */
+  public long getBatchCountTotal()
+  {
+    return _batchCountTotal.get();
+  }
+
+  /**
+   * Returns the total number of statements sent in flush batches.
+   */
+  public long getBatchStatementCountTotal()
+  {
+    return _batchStatementCountTotal.get();
+  }
+
   /**
    * Set false for EJB-style generation.
    */
@@ -496,7 +567,10 @@ public class AmberPersistenceUnit {
       table = new AmberTable(this, tableName);
       table.setCacheTimeout(getTableCacheTimeout());
 
-      _tableMap.put(tableName, table);
+      AmberTable oldTable = _tableMap.putIfAbsent(tableName, table);
+
+      if (oldTable != null)
+        return oldTable;
 
       _lazyTable.add(table);
     }
@@ -1421,6 +1495,31 @@ public class AmberPersistenceUnit {
     for (AmberEntityHome home : homeList) {
       home.init();
     }
+
+    if (_isClusterCache)
+      startClusterCache();
+  }
+
+  private void startClusterCache()
+  {
+    try {
+      AmberClusterCache clusterCache = new AmberClusterCache(this);
+      clusterCache.start();
+
+      _clusterCache = clusterCache;
+    } catch (Exception e) {
+      log.warning(L.l("{0}: cluster cache is not available, using local cache invalidation\n  {1}",
+                      this, e.toString()));
+      log.log(Level.FINE, e.toString(), e);
+    }
+  }
+
+  /**
+   * Returns the names of the unit's tables.
+   */
+  ArrayList<String> getTableNames()
+  {
+    return new ArrayList<String>(_tableMap.keySet());
   }
 
   /**
@@ -1744,6 +1843,22 @@ public class AmberPersistenceUnit {
    * Completions affecting the cache.
    */
   public void complete(ArrayList<AmberCompletion> completions)
+  {
+    if (completions.size() == 0)
+      return;
+
+    completeLocal(completions);
+
+    AmberClusterCache clusterCache = _clusterCache;
+
+    if (clusterCache != null)
+      clusterCache.publish(completions);
+  }
+
+  /**
+   * Completions affecting this server's cache.
+   */
+  void completeLocal(ArrayList<AmberCompletion> completions)
   {
     int size = completions.size();
     if (size == 0)
@@ -1801,6 +1916,12 @@ public class AmberPersistenceUnit {
    */
   public void destroy()
   {
+    AmberClusterCache clusterCache = _clusterCache;
+    _clusterCache = null;
+
+    if (clusterCache != null)
+      clusterCache.close();
+
     _typeManager = null;
     _queryCache = null;
     _entityCache = null;
@@ -42,6 +42,7 @@ import com.caucho.amber.expr.LoadEntityExpr;
 import com.caucho.amber.query.AbstractQuery;
 import com.caucho.amber.query.ResultSetImpl;
 import com.caucho.amber.query.AmberSelectQuery;
+import com.caucho.amber.query.QueryResultIterator;
 import com.caucho.amber.query.UserQuery;
 import com.caucho.amber.type.CalendarType;
 import com.caucho.amber.type.EntityType;
@@ -400,6 +401,35 @@ public class QueryImpl implements Query {
     }
   }
 
+  /**
+   * Execute the query, returning a cursor-backed iterator for large
+   * results. Entities are loaded as rows are returned and detached from
+   * the persistence context as the iterator advances. The iterator
+   * should be closed if it's not read to the end.
+   *
+   * @param fetchSize the JDBC driver fetch size, or 0 for the default
+   */
+  public QueryResultIterator getResultIterator(int fetchSize)
+  {
+    if (! isSelectQuery() || isNativeQuery())
+      throw new IllegalStateException(L.l("getResultIterator() can only be applied to a JPQL SELECT statement"));
+
+    AmberSelectQuery selectQuery = (AmberSelectQuery) _query;
+
+    if (selectQuery.getConstructorClass() != null)
+      throw new IllegalStateException(L.l("getResultIterator() does not support constructor queries"));
+
+    try {
+      // jpa/0y1b
+      if (_aConn.isInTransaction())
+        _aConn.flush();
+
+      return _userQuery.iterator(fetchSize);
+    } catch (Exception e) {
+      throw EJBExceptionWrapper.createRuntime(e);
+    }
+  }
+
   /**
    * Returns a single result.
    */
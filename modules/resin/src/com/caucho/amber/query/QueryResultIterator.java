@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 1998-2012 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Resin(R) Open Source
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Resin Open Source is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Resin Open Source is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Resin Open Source; if not, write to the
+ *
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ *
+ * @author Scott Ferguson
+ */
+
+package com.caucho.amber.query;
+
+import com.caucho.amber.AmberRuntimeException;
+import com.caucho.amber.manager.AmberConnection;
+
+import java.io.Closeable;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Cursor-backed iterator over a query's results.
+ *
+ * Each row is read from the open JDBC result set and its entities are
+ * loaded only when the row is returned. When the iterator advances,
+ * the previous row's entities are detached from the persistence
+ * context, so a scan over a large table runs in constant memory.
+ *
+ * Inside a transaction, a row's entities are also released from the
+ * transaction when the iterator advances, unless the application has
+ * modified, persisted or removed them.
+ *
+ * The iterator has its own JDBC statement, closed with the iterator,
+ * so other queries on the connection can run while it's open.
+ */
+public class QueryResultIterator implements Iterator<Object>, Closeable {
+  private static final Logger log
+    = Logger.getLogger(QueryResultIterator.class.getName());
+
+  private final AmberConnection _aConn;
+  private final int _tupleCount;
+
+  private ResultSetImpl _rs;
+  private Statement _stmt;
+
+  private int _entityMark = -1;
+  private int _txEntityMark;
+  private boolean _isNextValid;
+  private boolean _hasNext;
+
+  QueryResultIterator(AmberConnection aConn,
+                      ResultSetImpl rs,
+                      Statement stmt,
+                      int tupleCount)
+  {
+    _aConn = aConn;
+    _rs = rs;
+    _stmt = stmt;
+    _tupleCount = tupleCount;
+  }
+
+  /**
+   * Returns true if there's another row.
+   */
+  @Override
+  public boolean hasNext()
+  {
+    if (_isNextValid)
+      return _hasNext;
+
+    detachRow();
+
+    ResultSetImpl rs = _rs;
+
+    try {
+      _hasNext = rs != null && rs.next();
+    } catch (SQLException e) {
+      close();
+
+      throw new AmberRuntimeException(e);
+    }
+
+    _isNextValid = true;
+
+    if (! _hasNext)
+      close();
+
+    return _hasNext;
+  }
+
+  /**
+   * Returns the next row, loading its entities.
+   */
+  @Override
+  public Object next()
+  {
+    if (! hasNext())
+      throw new NoSuchElementException();
+
+    _isNextValid = false;
+    _entityMark = _aConn.getEntityMark();
+    _txEntityMark = _aConn.getTxEntityMark();
+
+    try {
+      if (_tupleCount == 1)
+        return _rs.getObject(1);
+
+      Object []values = new Object[_tupleCount];
+
+      for (int i = 0; i < _tupleCount; i++) {
+        values[i] = _rs.getObject(i + 1);
+      }
+
+      return values;
+    } catch (SQLException e) {
+      close();
+
+      throw new AmberRuntimeException(e);
+    }
+  }
+
+  @Override
+  public void remove()
+  {
+    throw new UnsupportedOperationException(getClass().getName());
+  }
+
+  /**
+   * Detaches the last row's entities and closes the result set and
+   * its statement.
+   */
+  @Override
+  public void close()
+  {
+    detachRow();
+
+    ResultSetImpl rs = _rs;
+    _rs = null;
+
+    Statement stmt = _stmt;
+    _stmt = null;
+
+    if (rs != null)
+      rs.close();
+
+    try {
+      if (stmt != null)
+        stmt.close();
+    } catch (SQLException e) {
+      log.log(Level.FINE, e.toString(), e);
+    }
+  }
+
+  private void detachRow()
+  {
+    int mark = _entityMark;
+    _entityMark = -1;
+
+    if (mark >= 0)
+      _aConn.detachEntities(mark, _txEntityMark);
+  }
+}
@@ -41,6 +41,7 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -381,6 +382,46 @@ public class UserQuery implements AmberQuery {
     return _rs;
   }
 
+  /**
+   * Executes the query returning a cursor-backed iterator, bypassing
+   * the query cache. The fetch size is passed to the JDBC driver.
+   */
+  public QueryResultIterator iterator(int fetchSize)
+    throws SQLException
+  {
+    _aConn.flushNoChecks();
+
+    AmberSelectQuery query = (AmberSelectQuery) _query;
+
+    int maxResults = _maxResults;
+
+    if (maxResults < 0)
+      maxResults = LIMIT_INF;
+
+    ResultSetImpl rs = new ResultSetImpl();
+
+    rs.setQuery(query);
+    rs.setSession(_aConn);
+    rs.setFirstResult(_firstResult);
+    rs.setMaxResults(maxResults);
+
+    ResultSet jdbcRs = executeQuery(_firstResult, maxResults, true, fetchSize);
+    Statement stmt = jdbcRs.getStatement();
+
+    try {
+      rs.setResultSet(jdbcRs, jdbcRs.getMetaData());
+      rs.setRow(_firstResult);
+      rs.init();
+    } catch (SQLException e) {
+      jdbcRs.close();
+      stmt.close();
+
+      throw e;
+    }
+
+    return new QueryResultIterator(_aConn, rs, stmt, query.getResultCount());
+  }
+
   private ResultSetCacheChunk fillCache(AmberSelectQuery query)
     throws SQLException
   {
@@ -408,6 +449,19 @@ public class UserQuery implements AmberQuery {
    */
   ResultSet executeQuery(int firstResults, int maxResults)
     throws SQLException
+  {
+    return executeQuery(firstResults, maxResults, false, 0);
+  }
+
+  /**
+   * Executes the query. A cursor query uses its own statement with the
+   * driver fetch size, which the caller closes.
+   */
+  private ResultSet executeQuery(int firstResults,
+                                 int maxResults,
+                                 boolean isCursor,
+                                 int fetchSize)
+    throws SQLException
   {
     String sql = _query.getSQL();
 
@@ -426,23 +480,42 @@ public class UserQuery implements AmberQuery {
         sql = metaData.limit(sql, 0, firstResults + maxResults);
     }
 
-    PreparedStatement pstmt = _aConn.prepareStatement(sql);
-    ArgExpr []args = _query.getArgList();
+    PreparedStatement pstmt;
 
-    if (args.length > 0)
-      pstmt.clearParameters();
+    if (isCursor) {
+      // the cursor's result set stays open while other queries run, so
+      // it can't use the connection's shared, cached statement
+      pstmt = _aConn.getConnection().prepareStatement(sql);
 
-    for (int i = 0; i < args.length; i++) {
-      args[i].setParameter(pstmt, i + 1, _argTypes, _argValues);
+      if (fetchSize != 0)
+        pstmt.setFetchSize(fetchSize);
     }
+    else
+      pstmt = _aConn.prepareStatement(sql);
 
-    ResultSet rs = pstmt.executeQuery();
+    try {
+      ArgExpr []args = _query.getArgList();
 
-    // jpa/1431
-    for (int i = row; i < firstResults && rs.next(); i++) {
-    }
+      if (args.length > 0)
+        pstmt.clearParameters();
+
+      for (int i = 0; i < args.length; i++) {
+        args[i].setParameter(pstmt, i + 1, _argTypes, _argValues);
+      }
+
+      ResultSet rs = pstmt.executeQuery();
 
-    return rs;
+      // jpa/1431
+      for (int i = row; i < firstResults && rs.next(); i++) {
+      }
+
+      return rs;
+    } catch (SQLException e) {
+      if (isCursor)
+        pstmt.close();
+
+      throw e;
+    }
   }
 
   /**
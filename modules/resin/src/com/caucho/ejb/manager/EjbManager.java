@@ -410,7 +410,36 @@ public class EjbManager implements ScanListener, EnvironmentListener {
     
     if (packageRoot != null)
       scanRoot = scanRoot.lookup(packageRoot.replace('.', '/'));
-      
+
+    if (! isEjbRoot(root, scanRoot))
+      return false;
+    
+    if (log.isLoggable(Level.FINE))
+        log.fine("EJB scanning '" + root + "'");
+
+    EjbRootConfig context = _configManager.createRootConfig(scanRoot);
+
+    if (context.isScanComplete())
+      return false;
+    else {
+      context.setScanComplete(true);
+      return true;
+    }
+  }
+
+  @Override
+  public boolean isRootScanCandidate(Path root, String packageRoot)
+  {
+    Path scanRoot = root;
+    
+    if (packageRoot != null)
+      scanRoot = scanRoot.lookup(packageRoot.replace('.', '/'));
+
+    return isEjbRoot(root, scanRoot);
+  }
+
+  private boolean isEjbRoot(Path root, Path scanRoot)
+  {
     if (_scannableRoots == null) {
       if (! Boolean.TRUE.equals(_localScanAll.get())) {
         if (! scanRoot.lookup("META-INF/ejb-jar.xml").canRead()) {
@@ -431,18 +460,8 @@ public class EjbManager implements ScanListener, EnvironmentListener {
       if (! _scannableRoots.contains(path))
         return false;
     }
-    
-    if (log.isLoggable(Level.FINE))
-        log.fine("EJB scanning '" + root + "'");
-
-    EjbRootConfig context = _configManager.createRootConfig(scanRoot);
 
-    if (context.isScanComplete())
-      return false;
-    else {
-      context.setScanComplete(true);
-      return true;
-    }
+    return true;
   }
 
   @Override
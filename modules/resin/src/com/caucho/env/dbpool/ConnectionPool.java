@@ -29,7 +29,9 @@
 
 package com.caucho.env.dbpool;
 
+import java.lang.ref.WeakReference;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
@@ -49,6 +51,7 @@ import com.caucho.config.ConfigException;
 import com.caucho.config.types.Period;
 import com.caucho.env.health.*;
 import com.caucho.env.meter.ActiveTimeMeter;
+import com.caucho.env.meter.HistogramMeter;
 import com.caucho.env.meter.MeterService;
 import com.caucho.inject.Module;
 import com.caucho.lifecycle.Lifecycle;
@@ -105,6 +108,12 @@ public class ConnectionPool extends AbstractManagedObject
   // the time to wait for a connection (30s)
   private long _connectionWaitTimeout = 30 * 1000L;
 
+  // interval for background validation of idle connections, 0 to disable
+  private long _validateInterval;
+
+  // max idle connections taken from the pool at once for validation
+  private int _validateBatchSize = 8;
+
   // True if the connector supports local transactions.
   private boolean _isEnableLocalTransaction = true;
 
@@ -128,16 +137,23 @@ public class ConnectionPool extends AbstractManagedObject
   private final ArrayList<ManagedPoolItem> _connectionPool
     = new ArrayList<ManagedPoolItem>();
 
+  // pool item lookup by managed connection, updated with _connectionPool
+  private final ConcurrentHashMap<ManagedConnection,ManagedPoolItem> _poolItemMap
+    = new ConcurrentHashMap<ManagedConnection,ManagedPoolItem>();
+
   private IdlePoolSet _idlePool;
 
+  // the last connection the thread returned to the idle pool. The item
+  // is weak so worker threads don't keep a closed pool's connections.
+  private final ThreadLocal<WeakReference<ManagedPoolItem>> _threadIdleItem
+    = new ThreadLocal<WeakReference<ManagedPoolItem>>();
+
   // temporary connection list for the alarm callback
   private final ArrayList<ManagedPoolItem> _alarmConnections
     = new ArrayList<ManagedPoolItem>();
 
   private Alarm _alarm;
 
-  // time of the last validation check
-  private long _lastValidCheckTime;
   // time the idle set was last empty
   private long _idlePoolExpire;
 
@@ -157,12 +173,17 @@ public class ConnectionPool extends AbstractManagedObject
   private ActiveTimeMeter _connectionTime;
   private ActiveTimeMeter _idleTime;
   private ActiveTimeMeter _queryTime;
+  private HistogramMeter _checkoutTime;
 
   private final AtomicLong _connectionCountTotal = new AtomicLong();
   private final AtomicLong _connectionCreateCountTotal = new AtomicLong();
   private final AtomicLong _connectionFailCountTotal = new AtomicLong();
   private long _lastFailTime;
 
+  private final AtomicLong _validateCountTotal = new AtomicLong();
+  private final AtomicLong _validateFailCountTotal = new AtomicLong();
+  private final AtomicLong _validateTimeTotal = new AtomicLong();
+
   private final Lifecycle _lifecycle = new Lifecycle();
 
   public ConnectionPool()
@@ -330,6 +351,40 @@ public class ConnectionPool extends AbstractManagedObject
       _idleTimeout = maxIdleTime;
   }
 
+  /**
+   * Returns the interval for background validation of idle connections.
+   */
+  public long getValidateInterval()
+  {
+    return _validateInterval;
+  }
+
+  /**
+   * Sets the interval for background validation of idle connections.
+   * Idle connections unused for half the interval are validated by the
+   * pool's alarm, so checkout doesn't need to validate them.
+   */
+  public void setValidateInterval(long interval)
+  {
+    _validateInterval = Math.max(interval, 0);
+  }
+
+  /**
+   * Sets the max number of idle connections validated at once.
+   */
+  public void setValidateBatchSize(int size)
+  {
+    _validateBatchSize = Math.max(size, 1);
+  }
+
+  /**
+   * Returns the max number of idle connections validated at once.
+   */
+  public int getValidateBatchSize()
+  {
+    return _validateBatchSize;
+  }
+
   /**
    * Returns the max idle count.
    */
@@ -611,6 +666,30 @@ public class ConnectionPool extends AbstractManagedObject
     return new Date(_lastFailTime);
   }
 
+  /**
+   * Returns the total idle connections validated in the background.
+   */
+  public long getValidateCountTotal()
+  {
+    return _validateCountTotal.get();
+  }
+
+  /**
+   * Returns the total idle connections evicted by background validation.
+   */
+  public long getValidateFailCountTotal()
+  {
+    return _validateFailCountTotal.get();
+  }
+
+  /**
+   * Returns the total time spent in background validation.
+   */
+  public long getValidateTimeTotal()
+  {
+    return _validateTimeTotal.get();
+  }
+
   /**
    * Initialize the connection manager.
    */
@@ -636,6 +715,7 @@ public class ConnectionPool extends AbstractManagedObject
     _connectionTime = MeterService.createActiveTimeMeter("Resin|Database|Connection");
     _idleTime = MeterService.createActiveTimeMeter("Resin|Database|Idle");
     _queryTime = MeterService.createActiveTimeMeter("Resin|Database|Query");
+    _checkoutTime = MeterService.createHistogramMeter("Resin|Database|Checkout");
 
     registerSelf();
 
@@ -643,7 +723,7 @@ public class ConnectionPool extends AbstractManagedObject
 
     if (! (mcf instanceof ValidatingManagedConnectionFactory)) {
       // never check
-      _lastValidCheckTime = Long.MAX_VALUE / 2;
+      _validateInterval = 0;
     }
 
     // recover any resources on startup
@@ -675,12 +755,27 @@ public class ConnectionPool extends AbstractManagedObject
     if (! _lifecycle.toActive())
       return;
 
+    _alarm.queue(getAlarmInterval());
+  }
+
+  /**
+   * Returns the interval for the idle and validation alarm.
+   */
+  private long getAlarmInterval()
+  {
+    long interval;
+
     if (0 < _idleTimeout && _idleTimeout < 1000)
-      _alarm.queue(1000);
+      interval = 1000;
     else if (1000 < _idleTimeout && _idleTimeout < 60000)
-      _alarm.queue(_idleTimeout);
+      interval = _idleTimeout;
     else
-      _alarm.queue(60000);
+      interval = 60000;
+
+    if (0 < _validateInterval)
+      interval = Math.min(interval, Math.max(_validateInterval / 2, 1000));
+
+    return interval;
   }
 
   /**
@@ -711,7 +806,16 @@ public class ConnectionPool extends AbstractManagedObject
   {
     Subject subject = null;
 
-    Object conn = allocateConnection(mcf, subject, info);
+    long startTime = _checkoutTime.start();
+
+    Object conn;
+
+    try {
+      conn = allocateConnection(mcf, subject, info);
+    } finally {
+      // failed and timed-out checkouts are recorded too
+      _checkoutTime.end(startTime);
+    }
 
     _connectionCountTotal.incrementAndGet();
 
@@ -903,22 +1007,9 @@ public class ConnectionPool extends AbstractManagedObject
     while (_lifecycle.isActive()) {
       ManagedConnection mConn;
 
-      long now = CurrentTime.getCurrentTime();
-
-      if (_lastValidCheckTime + 15000L < now) {
-        _lastValidCheckTime = now;
-
-        if (mcf instanceof ValidatingManagedConnectionFactory) {
-          ValidatingManagedConnectionFactory vmcf;
-          vmcf = (ValidatingManagedConnectionFactory) mcf;
-
-          validate(vmcf);
-        }
-      }
-
-      ManagedPoolItem poolItem = null;
+      ManagedPoolItem poolItem = allocateThreadIdleItem(mcf, subject, info);
 
-      while (true) {
+      while (poolItem == null) {
         // asks the Driver's ManagedConnectionFactory to match an
         // idle connection
         synchronized (_connectionPool) {
@@ -941,6 +1032,12 @@ public class ConnectionPool extends AbstractManagedObject
             throw new IllegalStateException(L.l("Unexpected non-matching PoolItem found for {0}",
                                                 mConn));
 
+          // the owning thread's fast path may have claimed it first
+          if (! poolItem.claimIdle()) {
+            poolItem = null;
+            continue;
+          }
+
           break;
         }
       }
@@ -963,8 +1060,58 @@ public class ConnectionPool extends AbstractManagedObject
     return null;
   }
 
+  /**
+   * Reclaims the connection this thread last returned to the idle pool,
+   * avoiding the match over the shared idle pool. The item is claimed
+   * with a compare-and-set instead of the pool lock, and the driver's
+   * ManagedConnectionFactory still decides if the connection matches.
+   */
+  private ManagedPoolItem allocateThreadIdleItem(ManagedConnectionFactory mcf,
+                                                 Subject subject,
+                                                 ConnectionRequestInfo info)
+    throws ResourceException
+  {
+    WeakReference<ManagedPoolItem> itemRef = _threadIdleItem.get();
+
+    if (itemRef == null)
+      return null;
+
+    ManagedPoolItem poolItem = itemRef.get();
+
+    if (poolItem == null || ! poolItem.claimIdle())
+      return null;
+
+    ManagedConnection mConn = poolItem.getManagedConnection();
+
+    if (mConn == null || poolItem.isConnectionError()) {
+      poolItem.destroy();
+
+      return null;
+    }
+
+    Set<ManagedConnection> connSet = Collections.singleton(mConn);
+
+    if (mcf.matchManagedConnections(connSet, subject, info) != mConn) {
+      // return it to the idle pool if the pool match removed it
+      // while it was claimed
+      poolItem.setIdle();
+      _idlePool.add(mConn);
+
+      return null;
+    }
+
+    _idlePool.remove(mConn);
+
+    return poolItem;
+  }
+
   private ManagedPoolItem findPoolItem(ManagedConnection mConn)
   {
+    ManagedPoolItem poolItem = _poolItemMap.get(mConn);
+
+    if (poolItem != null && poolItem.getManagedConnection() == mConn)
+      return poolItem;
+
     synchronized (_connectionPool) {
       for (int i = _connectionPool.size() - 1; i >= 0; i--) {
         ManagedPoolItem testPoolItem = _connectionPool.get(i);
@@ -978,18 +1125,6 @@ public class ConnectionPool extends AbstractManagedObject
     }
   }
 
-  /**
-   * Validates the pool.
-   */
-  private void validate(ValidatingManagedConnectionFactory mcf)
-  {
-    /*
-     Set invalid = null;
-
-    synchronized (_idlePool) {
-    } */
-  }
-
   /**
    * Creates a new connection.
    */
@@ -1025,6 +1160,7 @@ public class ConnectionPool extends AbstractManagedObject
 
       synchronized (_connectionPool) {
         _connectionPool.add(poolItem);
+        _poolItemMap.put(mConn, poolItem);
       }
 
       poolItem = null;
@@ -1170,16 +1306,10 @@ public class ConnectionPool extends AbstractManagedObject
    */
   public void markForPoolRemoval(ManagedConnection mConn)
   {
-    synchronized (_connectionPool) {
-      for (int i = _connectionPool.size() - 1; i >= 0; i--) {
-        ManagedPoolItem poolItem = _connectionPool.get(i);
+    ManagedPoolItem poolItem = findPoolItem(mConn);
 
-        if (poolItem.getManagedConnection() == mConn) {
-          poolItem.setConnectionError();
-          return;
-        }
-      }
-    }
+    if (poolItem != null)
+      poolItem.setConnectionError();
   }
 
   /**
@@ -1210,7 +1340,19 @@ public class ConnectionPool extends AbstractManagedObject
         // shrink the idle pool when non-empty for idleTimeout
         _idlePoolExpire = now + _idleTimeout;
       }
-      else if (_idlePool.add(mConn)) {
+      else {
+        item.setIdle();
+
+        if (! _idlePool.add(mConn))
+          return;
+
+        WeakReference<ManagedPoolItem> itemRef = _threadIdleItem.get();
+
+        if (! _lifecycle.isActive()) {
+        }
+        else if (itemRef == null || itemRef.get() != item)
+          _threadIdleItem.set(new WeakReference<ManagedPoolItem>(item));
+
         item = null;
         return;
       }
@@ -1234,6 +1376,9 @@ public class ConnectionPool extends AbstractManagedObject
 
       _connectionPool.remove(item);
       _connectionPool.notifyAll();
+
+      if (mConn != null && _poolItemMap.get(mConn) == item)
+        _poolItemMap.remove(mConn);
     }
 
     try {
@@ -1262,6 +1407,7 @@ public class ConnectionPool extends AbstractManagedObject
       clearItems.addAll(pool);
 
       pool.clear();
+      _poolItemMap.clear();
     }
 
     for (int i = 0; i < clearItems.size(); i++) {
@@ -1300,20 +1446,126 @@ public class ConnectionPool extends AbstractManagedObject
 
       _alarmConnections.clear();
 
-      fillIdlePool();
+      int evictCount = validateIdlePool();
+
+      fillIdlePool(evictCount);
     } finally {
-      if (! _lifecycle.isActive()) {
+      if (_lifecycle.isActive())
+        _alarm.queue(getAlarmInterval());
+    }
+  }
+
+  /**
+   * Validates idle connections in batches from the alarm thread, evicting
+   * invalid ones. Connections used or validated within half the validate
+   * interval are skipped. Returns the number of evicted connections.
+   */
+  private int validateIdlePool()
+  {
+    if (_validateInterval <= 0
+        || ! (_mcf instanceof ValidatingManagedConnectionFactory)) {
+      return 0;
+    }
+
+    ValidatingManagedConnectionFactory vmcf
+      = (ValidatingManagedConnectionFactory) _mcf;
+
+    long startTime = CurrentTime.getCurrentTimeActual();
+    long recentTime = CurrentTime.getCurrentTime() - _validateInterval / 2;
+
+    ArrayList<ManagedConnection> candidates
+      = new ArrayList<ManagedConnection>();
+
+    synchronized (_connectionPool) {
+      for (ManagedConnection mConn : _idlePool) {
+        ManagedPoolItem poolItem = findPoolItem(mConn);
+
+        if (poolItem == null)
+          continue;
+
+        long lastTime = Math.max(poolItem.getEventTime(),
+                                 poolItem.getValidateTime());
+
+        if (lastTime < recentTime)
+          candidates.add(mConn);
       }
-      else if (0 < _idleTimeout && _idleTimeout < 1000)
-        _alarm.queue(1000);
-      else if (1000 < _idleTimeout && _idleTimeout < 60000)
-        _alarm.queue(_idleTimeout);
-      else
-        _alarm.queue(60000);
     }
+
+    int evictCount = 0;
+
+    for (int i = 0; i < candidates.size() && _lifecycle.isActive(); ) {
+      HashSet<ManagedConnection> batch = new HashSet<ManagedConnection>();
+
+      // take the batch from the idle pool so checkout can't reuse it
+      // while it's validated
+      synchronized (_connectionPool) {
+        for (; i < candidates.size() && batch.size() < _validateBatchSize; i++) {
+          ManagedConnection mConn = candidates.get(i);
+          ManagedPoolItem poolItem = findPoolItem(mConn);
+
+          if (poolItem != null
+              && _idlePool.remove(mConn)
+              && poolItem.claimIdle()) {
+            batch.add(mConn);
+          }
+        }
+      }
+
+      if (batch.size() == 0)
+        continue;
+
+      Set<?> invalidSet = null;
+
+      try {
+        invalidSet = vmcf.getInvalidConnections(batch);
+      } catch (Exception e) {
+        log.log(Level.FINE, e.toString(), e);
+
+        invalidSet = batch;
+      }
+
+      _validateCountTotal.addAndGet(batch.size());
+
+      long validateTime = CurrentTime.getCurrentTime();
+
+      for (ManagedConnection mConn : batch) {
+        ManagedPoolItem poolItem = findPoolItem(mConn);
+
+        if (poolItem == null)
+          continue;
+
+        if (invalidSet != null && invalidSet.contains(mConn)) {
+          if (log.isLoggable(Level.FINE))
+            log.fine(this + " evicting invalid idle connection " + poolItem);
+
+          evictCount++;
+          _validateFailCountTotal.incrementAndGet();
+
+          poolItem.destroy();
+        }
+        else {
+          poolItem.setValidateTime(validateTime);
+          poolItem.setIdle();
+
+          if (! _idlePool.add(mConn))
+            poolItem.destroy();
+        }
+      }
+
+      // wakes checkouts that waited while the batch was out of the pool
+      notifyConnectionAvailable();
+    }
+
+    _validateTimeTotal.addAndGet(CurrentTime.getCurrentTimeActual() - startTime);
+
+    return evictCount;
   }
-  
-  private void fillIdlePool()
+
+  /**
+   * Fills the idle pool to the min-idle count and replaces connections
+   * evicted by validation, so checkout doesn't wait for a new connection.
+   */
+  private void fillIdlePool(int replaceCount)
   {
     int count = _minIdleCount;
   
@@ -1331,6 +1583,15 @@ public class ConnectionPool extends AbstractManagedObject
         if (userPoolItem != null)
           userPoolItem.toIdle();
       }
+
+      while (replaceCount-- > 0
+             && isCreateAvailable()
+             && _lifecycle.isActive()) {
+        UserPoolItem userPoolItem = createConnection(_mcf, null, null, null);
+
+        if (userPoolItem != null)
+          userPoolItem.toIdle();
+      }
     } catch (Exception e) {
       e.printStackTrace();
       
@@ -1367,11 +1628,15 @@ public class ConnectionPool extends AbstractManagedObject
     synchronized (_connectionPool) {
       pool = new ArrayList<ManagedPoolItem>(_connectionPool);
       _connectionPool.clear();
+      _poolItemMap.clear();
 
       if (_idlePool != null)
         _idlePool.clear();
     }
 
+    // other threads' slots only hold weak references
+    _threadIdleItem.remove();
+
     for (int i = 0; i < pool.size(); i++) {
       ManagedPoolItem poolItem = pool.get(i);
 
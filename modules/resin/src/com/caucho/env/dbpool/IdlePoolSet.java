@@ -161,9 +161,11 @@ public class IdlePoolSet extends AbstractSet<ManagedConnection> {
   @Override
   public boolean remove(Object o)
   {
-    for (int i = _tail; i != _head; i = (i + 1) % _entriesLength) {
-      if (_entries[i] == o) {
-        return removeEntry(i);
+    synchronized (this) {
+      for (int i = _tail; i != _head; i = (i + 1) % _entriesLength) {
+        if (_entries[i] == o) {
+          return removeEntry(i);
+        }
       }
     }
     
@@ -50,6 +50,7 @@ import javax.security.auth.Subject;
 import javax.transaction.xa.XAException;
 import javax.transaction.xa.XAResource;
 import javax.transaction.xa.Xid;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -96,6 +97,14 @@ class ManagedPoolItem implements ConnectionEventListener, ManagedXAResource {
 
   private long _poolStartTime;
   private long _poolEventTime;
+  // last successful background validation, separate from the event time
+  // used by the max-idle timeout
+  private volatile long _validateTime;
+
+  // true while the connection is in the idle pool. Checkout claims the
+  // item with a compare-and-set, so the thread's fast path and the idle
+  // pool match can't both take it
+  private final AtomicBoolean _isIdle = new AtomicBoolean();
 
   private Xid _xid;
   private int _endFlags = -1;
@@ -204,6 +213,23 @@ class ManagedPoolItem implements ConnectionEventListener, ManagedXAResource {
     return _mConn == null;
   }
 
+  /**
+   * Marks the item as available in the idle pool.
+   */
+  void setIdle()
+  {
+    _isIdle.set(true);
+  }
+
+  /**
+   * Claims the idle item for checkout or validation, returning false if
+   * another thread has already claimed it.
+   */
+  boolean claimIdle()
+  {
+    return _isIdle.compareAndSet(true, false);
+  }
+
   /**
    * Returns the time of the last event.
    */
@@ -212,6 +238,22 @@ class ManagedPoolItem implements ConnectionEventListener, ManagedXAResource {
     return _poolEventTime;
   }
 
+  /**
+   * Returns the time the idle connection last passed validation.
+   */
+  long getValidateTime()
+  {
+    return _validateTime;
+  }
+
+  /**
+   * Records a successful validation of the idle connection.
+   */
+  void setValidateTime(long now)
+  {
+    _validateTime = now;
+  }
+
   /**
    * Returns the time the connection was first used.
    */
@@ -1126,6 +1168,8 @@ class ManagedPoolItem implements ConnectionEventListener, ManagedXAResource {
   @Override
   public void destroy()
   {
+    _isIdle.set(false);
+
     ManagedConnection mConn = _mConn;
     _mConn = null;
 
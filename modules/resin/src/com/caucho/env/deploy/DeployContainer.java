@@ -37,10 +37,15 @@ import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.annotation.PostConstruct;
 
+import com.caucho.env.thread.ThreadPool;
 import com.caucho.lifecycle.Lifecycle;
 import com.caucho.loader.Environment;
 import com.caucho.make.CachedDependency;
@@ -55,6 +60,9 @@ public class DeployContainer<C extends DeployControllerApi<?>>
   extends CachedDependency
   implements DeployContainerApi<C>, Dependency
 {
+  private static final Logger log
+    = Logger.getLogger(DeployContainer.class.getName());
+  
   private final DeployListGenerator<C> _deployListGenerator
     = new DeployListGenerator<C>(this);
 
@@ -63,6 +71,8 @@ public class DeployContainer<C extends DeployControllerApi<?>>
   private final Lifecycle _lifecycle = new Lifecycle();
   
   private Class<?> _type;
+  
+  private int _startupParallelMax = 1;
 
   /**
    * Creates the deploy container.
@@ -75,6 +85,24 @@ public class DeployContainer<C extends DeployControllerApi<?>>
     setCheckInterval(Environment.getDependencyCheckInterval());
   }
   
+  /**
+   * Sets the maximum number of controllers started concurrently. Controllers
+   * with the same startup-priority are started in parallel, and each
+   * priority completes before the next one starts.
+   */
+  public void setStartupParallelMax(int max)
+  {
+    _startupParallelMax = max;
+  }
+
+  /**
+   * Returns the maximum number of controllers started concurrently.
+   */
+  public int getStartupParallelMax()
+  {
+    return _startupParallelMax;
+  }
+  
   /**
    * Adds a deploy generator.
    */
@@ -168,6 +196,11 @@ public class DeployContainer<C extends DeployControllerApi<?>>
 
     Collections.sort(controllerList, new StartupPriorityComparator());
 
+    if (_startupParallelMax > 1) {
+      startParallel(controllerList);
+      return;
+    }
+
     for (int i = 0; i < controllerList.size(); i++) {
       C controller = controllerList.get(i);
 
@@ -175,6 +208,73 @@ public class DeployContainer<C extends DeployControllerApi<?>>
     }
   }
 
+  /**
+   * Starts the sorted controllers, running each group with the same
+   * startup-priority concurrently.  As with the sequential start, the
+   * first failure stops the startup and is thrown to the caller.
+   */
+  private void startParallel(ArrayList<C> controllerList)
+  {
+    int size = controllerList.size();
+    int i = 0;
+
+    AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+    while (i < size) {
+      int priority = controllerList.get(i).getStartupPriority();
+
+      ConcurrentLinkedQueue<C> startQueue = new ConcurrentLinkedQueue<C>();
+
+      for (; i < size; i++) {
+        C controller = controllerList.get(i);
+
+        if (controller.getStartupPriority() != priority)
+          break;
+
+        startQueue.add(controller);
+      }
+
+      startGroup(startQueue, failure);
+
+      Throwable exn = failure.get();
+
+      if (exn instanceof RuntimeException)
+        throw (RuntimeException) exn;
+      else if (exn instanceof Error)
+        throw (Error) exn;
+      else if (exn != null)
+        throw new IllegalStateException(exn);
+    }
+  }
+
+  /**
+   * Starts a group of independent controllers, using at most
+   * startup-parallel-max threads including the current thread.
+   */
+  private void startGroup(ConcurrentLinkedQueue<C> startQueue,
+                          AtomicReference<Throwable> failure)
+  {
+    int workerCount = Math.min(_startupParallelMax, startQueue.size()) - 1;
+
+    CountDownLatch latch = new CountDownLatch(workerCount);
+    ThreadPool threadPool = ThreadPool.getCurrent();
+
+    for (int i = 0; i < workerCount; i++) {
+      StartTask task = new StartTask(startQueue, failure, latch);
+
+      if (! threadPool.schedule(task))
+        latch.countDown();
+    }
+
+    new StartTask(startQueue, failure, null).run();
+
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      log.log(Level.FINER, e.toString(), e);
+    }
+  }
+
   /**
    * Returns the matching entry.
    */
@@ -467,6 +567,43 @@ public class DeployContainer<C extends DeployControllerApi<?>>
     }
   }
   
+  class StartTask implements Runnable {
+    private final ConcurrentLinkedQueue<C> _startQueue;
+    private final AtomicReference<Throwable> _failure;
+    private final CountDownLatch _latch;
+
+    StartTask(ConcurrentLinkedQueue<C> startQueue,
+              AtomicReference<Throwable> failure,
+              CountDownLatch latch)
+    {
+      _startQueue = startQueue;
+      _failure = failure;
+      _latch = latch;
+    }
+
+    @Override
+    public void run()
+    {
+      try {
+        C controller;
+
+        while (_failure.get() == null
+               && (controller = _startQueue.poll()) != null) {
+          try {
+            controller.startOnInit();
+          } catch (Throwable e) {
+            // the first failure is thrown from start() after the group
+            if (! _failure.compareAndSet(null, e))
+              log.log(Level.FINE, e.toString(), e);
+          }
+        }
+      } finally {
+        if (_latch != null)
+          _latch.countDown();
+      }
+    }
+  }
+  
   static class ControllerNameMatch<C extends DeployControllerApi<?>>
     implements Match<C,String>
   {
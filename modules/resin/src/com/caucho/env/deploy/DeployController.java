@@ -82,6 +82,7 @@ abstract public class DeployController<I extends DeployInstance>
   private long _redeployCheckInterval = REDEPLOY_CHECK_INTERVAL;
   
   private long _startTime;
+  private volatile long _startDuration;
   private final AtomicReference<I> _deployInstanceRef
     = new AtomicReference<I>();
 
@@ -289,6 +290,14 @@ abstract public class DeployController<I extends DeployInstance>
   {
     return _startTime;
   }
+
+  /**
+   * Returns the time in milliseconds the last start took.
+   */
+  final public long getStartDuration()
+  {
+    return _startDuration;
+  }
   
   /**
    * Initialize the entry.
@@ -660,6 +669,8 @@ abstract public class DeployController<I extends DeployInstance>
     ClassLoader loader = null;
     boolean isStarting = false;
     boolean isActive = false;
+    
+    long beginTime = CurrentTime.getCurrentTime();
 
     try {
       thread.setContextClassLoader(_parentLoader);
@@ -699,6 +710,7 @@ abstract public class DeployController<I extends DeployInstance>
       isActive = true;
 
       _startTime = CurrentTime.getCurrentTime();
+      _startDuration = _startTime - beginTime;
     } catch (ConfigException e) {
       log.log(Level.FINEST, e.toString(), e);
 
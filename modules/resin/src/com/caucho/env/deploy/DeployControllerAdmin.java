@@ -145,6 +145,12 @@ abstract public class DeployControllerAdmin<C extends EnvironmentDeployControlle
   {
     return new Date(getController().getStartTime());
   }
+
+  @Override
+  public long getStartDuration()
+  {
+    return getController().getStartDuration();
+  }
   
   @Override
   public Map<String,String> getRepositoryMetaData()
@@ -599,6 +599,12 @@ public class PersistenceManager
     return false;
   }
 
+  @Override
+  public boolean isRootScanCandidate(Path root, String packageRoot)
+  {
+    return false;
+  }
+
   @Override
   public ScanClass scanClass(Path root, String packageRoot,
                              String className, int modifiers)
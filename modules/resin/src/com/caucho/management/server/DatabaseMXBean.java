@@ -30,6 +30,7 @@
 package com.caucho.management.server;
 
 import com.caucho.jmx.Description;
+import com.caucho.jmx.Units;
 
 /**
  * MBean API for the database connection pool.
@@ -62,4 +63,27 @@ public interface DatabaseMXBean extends ConnectionPoolMXBean {
    */
   @Description("The JDBC drivers")
   public JdbcDriverMXBean []getDrivers();
+
+  //
+  // Statistics
+  //
+
+  /**
+   * Returns the total idle connections validated in the background.
+   */
+  @Description("The total number of idle connections validated in the background")
+  public long getValidateCountTotal();
+
+  /**
+   * Returns the total idle connections evicted by validation.
+   */
+  @Description("The total number of idle connections evicted by background validation")
+  public long getValidateFailCountTotal();
+
+  /**
+   * Returns the total time spent validating idle connections.
+   */
+  @Description("The total time spent in background validation")
+  @Units("milliseconds")
+  public long getValidateTimeTotal();
 }
@@ -113,6 +113,13 @@ public interface DeployControllerMXBean extends ManagedObjectMXBean
   @Description("The current time of the last start")
   public Date getStartTime();
 
+  /**
+   * Returns the time the last start took.
+   */
+  @Description("The time taken by the last start")
+  @Units("milliseconds")
+  public long getStartDuration();
+
   //
   // Operations
   //
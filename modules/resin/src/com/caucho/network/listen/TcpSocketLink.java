@@ -39,6 +39,8 @@ import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.caucho.env.meter.HistogramMeter;
+import com.caucho.env.meter.MeterService;
 import com.caucho.env.shutdown.ShutdownSystem;
 import com.caucho.env.thread.ThreadPool;
 import com.caucho.inject.Module;
@@ -70,6 +72,9 @@ public class TcpSocketLink extends AbstractSocketLink
   private static final ThreadLocal<ProtocolConnection> _currentRequest
     = new ThreadLocal<ProtocolConnection>();
 
+  private static final HistogramMeter _requestTimeMeter
+    = MeterService.createHistogramMeter("Resin|Request");
+
   private final int _connectionId;  // The connection's id
   private final String _id;
   private final String _name;
@@ -1346,13 +1351,19 @@ public class TcpSocketLink extends AbstractSocketLink
 
       _state = _state.toActive(this, _connectionStartTime);
 
-      if (! getRequest().handleRequest()) {
-        killKeepalive("dispatch handleRequest failed");
+      long meterStartTime = _requestTimeMeter.start();
+
+      try {
+        if (! getRequest().handleRequest()) {
+          killKeepalive("dispatch handleRequest failed");
         
-        if (log.isLoggable(Level.FINE)) {
-          log.fine(this + " disabled keepalive because request failed "
-                   + getRequest());
+          if (log.isLoggable(Level.FINE)) {
+            log.fine(this + " disabled keepalive because request failed "
+                     + getRequest());
+          }
         }
+      } finally {
+        _requestTimeMeter.end(meterStartTime);
       }
       
       _requestStartTime = 0;
@@ -216,7 +216,8 @@ public class ResinQuercus extends QuercusContext
       else if (isConnectionPool()) {
         String id = url.replace(".", "_");
 
-        return DatabaseManager.findDatabase(id, url, driver);
+        return DatabaseManager.findDatabase(id, url, driver,
+                                            getPreparedStatementCacheSize());
       }
       else {
         return super.findDatabase(driver, url);
@@ -56,6 +56,9 @@ abstract public class FrameInputStream extends InputStream
 {
   private WebSocketContext _cxt;
   private WebSocketReader _textIn;
+
+  private WebSocketDeflate _deflate;
+  private boolean _isCompressed;
   
   public void init(WebSocketContext cxt, InputStream is)
   {
@@ -66,6 +69,50 @@ abstract public class FrameInputStream extends InputStream
   {
     return _cxt;
   }
+
+  /**
+   * Accepts permessage-deflate compressed messages.
+   */
+  public void setDeflate(WebSocketDeflate deflate)
+  {
+    _deflate = deflate;
+  }
+
+  public WebSocketDeflate getDeflate()
+  {
+    return _deflate;
+  }
+
+  /**
+   * True if the current message is compressed.
+   */
+  public boolean isCompressed()
+  {
+    return _isCompressed;
+  }
+
+  /**
+   * Checks a frame's reserved bits.  RSV1 on the first frame of a data
+   * message marks it as compressed when permessage-deflate is enabled.
+   */
+  protected boolean isReservedValid(int rsv, int opcode)
+  {
+    boolean isData = opcode == OP_TEXT || opcode == OP_BINARY;
+
+    if (rsv == 0) {
+      if (isData)
+        _isCompressed = false;
+
+      return true;
+    }
+    else if (rsv == WebSocketDeflate.FLAG_RSV1 && isData && _deflate != null) {
+      _isCompressed = true;
+
+      return true;
+    }
+    else
+      return false;
+  }
   
   abstract public int getOpcode();
 
@@ -174,7 +174,7 @@ public class MaskedFrameInputStream extends FrameInputStream
       
       int rsv = frame1 & 0x70;
       
-      if (rsv != 0) {
+      if (! isReservedValid(rsv, _op)) {
         getContext().close(CLOSE_ERROR, "illegal request");
         return false;
       }
@@ -168,7 +168,7 @@ public class UnmaskedFrameInputStream extends FrameInputStream
     
     int rsv = frame1 & 0x70;
     
-    if (rsv != 0) {
+    if (! isReservedValid(rsv, _op)) {
       if (getContext() != null) {
         getContext().close(CLOSE_ERROR, "illegal request");
       }
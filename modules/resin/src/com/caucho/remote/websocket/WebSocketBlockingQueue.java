@@ -29,6 +29,9 @@
 
 package com.caucho.remote.websocket;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.concurrent.BlockingQueue;
@@ -229,12 +232,18 @@ public class WebSocketBlockingQueue<T> implements BlockingQueue<T>
   
   static class WebSocketWriterActor<T> extends AbstractActorProcessor<T> {
     private final WebSocketContext _ws;
+    private final WebSocketContext _batchWs;
     private final WebSocketEncoder<T> _encoder;
     
     WebSocketWriterActor(WebSocketContext ws, WebSocketEncoder<T> encoder)
     {
       _ws = ws;
       _encoder = encoder;
+
+      if (ws instanceof WebSocketBatchContext)
+        _batchWs = new BatchContext((WebSocketBatchContext) ws);
+      else
+        _batchWs = ws;
     }
     
     @Override
@@ -246,13 +255,121 @@ public class WebSocketBlockingQueue<T> implements BlockingQueue<T>
     @Override
     public void process(T value) throws Exception
     {
-      _encoder.encode(_ws, value);
+      // messages queued together are written as one batch with a
+      // single flush at the end
+      _encoder.encode(_batchWs, value);
     }
 
     @Override
     public void onProcessComplete() throws Exception
     {
-      _encoder.flush(_ws);
+      try {
+        _encoder.flush(_batchWs);
+      } finally {
+        _ws.flush();
+      }
+    }
+  }
+
+  /**
+   * Context for the queue's encoder, starting messages without
+   * auto-flush. The shared context's auto-flush is unchanged, so
+   * other threads writing to it still flush each message.
+   */
+  static class BatchContext implements WebSocketContext {
+    private final WebSocketBatchContext _ws;
+
+    BatchContext(WebSocketBatchContext ws)
+    {
+      _ws = ws;
+    }
+
+    @Override
+    public <T> BlockingQueue<T> createOutputQueue(WebSocketEncoder<T> encoder)
+    {
+      return _ws.createOutputQueue(encoder);
+    }
+
+    @Override
+    public OutputStream startBinaryMessage()
+      throws IOException
+    {
+      return _ws.startBinaryMessage(false);
+    }
+
+    @Override
+    public PrintWriter startTextMessage()
+      throws IOException
+    {
+      return _ws.startTextMessage(false);
+    }
+
+    @Override
+    public void setTimeout(long timeout)
+    {
+      _ws.setTimeout(timeout);
+    }
+
+    @Override
+    public long getTimeout()
+    {
+      return _ws.getTimeout();
+    }
+
+    @Override
+    public void setAutoFlush(boolean isAutoFlush)
+    {
+      _ws.setAutoFlush(isAutoFlush);
+    }
+
+    @Override
+    public boolean isAutoFlush()
+    {
+      return _ws.isAutoFlush();
+    }
+
+    @Override
+    public void flush()
+      throws IOException
+    {
+      _ws.flush();
+    }
+
+    @Override
+    public void close()
+    {
+      _ws.close();
+    }
+
+    @Override
+    public void close(int code, String message)
+    {
+      _ws.close(code, message);
+    }
+
+    @Override
+    public void pong(byte []value)
+      throws IOException
+    {
+      _ws.pong(value);
+    }
+
+    @Override
+    public void disconnect()
+    {
+      _ws.disconnect();
+    }
+
+    @Override
+    public void onClose(int closeCode, String closeMessage)
+    {
+      _ws.onClose(closeCode, closeMessage);
+    }
+
+    @Override
+    public String toString()
+    {
+      return getClass().getSimpleName() + "[" + _ws + "]";
     }
   }
 }
@@ -0,0 +1,331 @@
+/*
+ * Copyright (c) 1998-2012 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Resin(R) Open Source
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Resin Open Source is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Resin Open Source is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Resin Open Source; if not, write to the
+ *
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ *
+ * @author Scott Ferguson
+ */
+
+package com.caucho.remote.websocket;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import com.caucho.util.FreeRing;
+
+/**
+ * permessage-deflate (RFC 7692) for a WebSocket connection.
+ *
+ * Both directions negotiate no_context_takeover, so each message is
+ * compressed independently and the Deflater and Inflater return to a
+ * shared pool between messages instead of being held by idle sockets.
+ */
+public class WebSocketDeflate implements WebSocketConstants
+{
+  public static final String EXTENSION = "permessage-deflate";
+
+  public static final String RESPONSE
+    = "permessage-deflate; server_no_context_takeover; client_no_context_takeover";
+
+  public static final int FLAG_RSV1 = 0x40;
+
+  private static final byte []TAIL = new byte[] { 0, 0, (byte) 0xff, (byte) 0xff };
+
+  private static final int FRAME_MAX = 0xffff;
+
+  // larger buffers are released after the message so idle sockets
+  // don't hold them
+  private static final int BUFFER_RETAIN = 64 * 1024;
+
+  private static final FreeRing<Deflater> _freeDeflater
+    = new FreeRing<Deflater>(64);
+
+  private static final FreeRing<Inflater> _freeInflater
+    = new FreeRing<Inflater>(64);
+
+  private final int _messageMax;
+
+  private byte []_message = new byte[256];
+  private int _messageLength;
+
+  private byte []_result = new byte[256];
+
+  private final byte []_header = new byte[4];
+
+  /**
+   * Creates a deflate for outbound messages, which have no size limit.
+   */
+  public WebSocketDeflate()
+  {
+    this(0);
+  }
+
+  /**
+   * Creates a deflate for inbound messages.
+   *
+   * @param messageMax the maximum compressed and inflated message size
+   */
+  public WebSocketDeflate(int messageMax)
+  {
+    _messageMax = messageMax;
+  }
+
+  /**
+   * True if the client's Sec-WebSocket-Extensions offers permessage-deflate
+   * with parameters the server can accept.
+   */
+  public static boolean isOffered(String extensions)
+  {
+    if (extensions == null)
+      return false;
+
+    for (String item : extensions.split(",")) {
+      String []params = item.split(";");
+
+      if (EXTENSION.equals(params[0].trim()) && isAcceptable(params))
+        return true;
+    }
+
+    return false;
+  }
+
+  /**
+   * java.util.zip.Deflater always uses a 32k window, so offers limiting
+   * server_max_window_bits below 15 are declined (RFC 7692 7.1.2.1).
+   */
+  private static boolean isAcceptable(String []params)
+  {
+    for (int i = 1; i < params.length; i++) {
+      String param = params[i].trim();
+      String value = null;
+
+      int p = param.indexOf('=');
+
+      if (p >= 0) {
+        value = param.substring(p + 1).trim();
+        param = param.substring(0, p).trim();
+
+        if (value.length() > 1 && value.startsWith("\"")
+            && value.endsWith("\"")) {
+          value = value.substring(1, value.length() - 1);
+        }
+      }
+
+      if (! "server_max_window_bits".equals(param))
+        continue;
+
+      if (! "15".equals(value))
+        return false;
+    }
+
+    return true;
+  }
+
+  /**
+   * Appends payload to the current message.
+   */
+  public void write(byte []buffer, int offset, int length)
+    throws IOException
+  {
+    if (_messageLength == 0 && BUFFER_RETAIN < _message.length)
+      _message = new byte[256];
+
+    if (0 < _messageMax && _messageMax < _messageLength + length)
+      throw new WebSocketProtocolException("message too large");
+
+    if (_message.length < _messageLength + length) {
+      byte []message = new byte[Math.max(2 * _message.length,
+                                         _messageLength + length)];
+
+      System.arraycopy(_message, 0, message, 0, _messageLength);
+
+      _message = message;
+    }
+
+    System.arraycopy(buffer, offset, _message, _messageLength, length);
+
+    _messageLength += length;
+  }
+
+  /**
+   * Compresses the current message and writes it as frames with RSV1
+   * set on the first frame.
+   */
+  public void writeMessage(OutputStream os, int opcode)
+    throws IOException
+  {
+    int length = deflate(_message, _messageLength);
+    _messageLength = 0;
+
+    byte []result = _result;
+    byte []header = _header;
+    int offset = 0;
+    int code = opcode | FLAG_RSV1;
+
+    do {
+      int sublen = Math.min(FRAME_MAX, length - offset);
+
+      if (offset + sublen == length)
+        code |= FLAG_FIN;
+
+      if (sublen < 0x7e) {
+        header[0] = (byte) code;
+        header[1] = (byte) sublen;
+
+        os.write(header, 0, 2);
+      }
+      else {
+        header[0] = (byte) code;
+        header[1] = (byte) 0x7e;
+        header[2] = (byte) (sublen >> 8);
+        header[3] = (byte) sublen;
+
+        os.write(header, 0, 4);
+      }
+
+      os.write(result, offset, sublen);
+
+      offset += sublen;
+      code = OP_CONT;
+    } while (offset < length);
+  }
+
+  /**
+   * Inflates the current message, returning the length of the result
+   * in getResult().
+   */
+  public int inflateMessage()
+    throws IOException
+  {
+    write(TAIL, 0, TAIL.length);
+
+    int length = inflate(_message, _messageLength);
+    _messageLength = 0;
+
+    return length;
+  }
+
+  public byte []getResult()
+  {
+    return _result;
+  }
+
+  private int deflate(byte []data, int length)
+  {
+    if (BUFFER_RETAIN < _result.length)
+      _result = new byte[256];
+
+    Deflater deflater = _freeDeflater.allocate();
+
+    if (deflater == null)
+      deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+
+    try {
+      deflater.setInput(data, 0, length);
+
+      int resultLength = 0;
+
+      while (true) {
+        if (_result.length - resultLength < 64)
+          growResult(resultLength);
+
+        int sublen = deflater.deflate(_result, resultLength,
+                                      _result.length - resultLength,
+                                      Deflater.SYNC_FLUSH);
+
+        resultLength += sublen;
+
+        if (resultLength < _result.length)
+          break;
+      }
+
+      // the sync flush ends with the 00 00 ff ff tail, which is implied
+      return resultLength - TAIL.length;
+    } finally {
+      deflater.reset();
+
+      if (! _freeDeflater.free(deflater))
+        deflater.end();
+    }
+  }
+
+  private int inflate(byte []data, int length)
+    throws IOException
+  {
+    if (BUFFER_RETAIN < _result.length)
+      _result = new byte[256];
+
+    Inflater inflater = _freeInflater.allocate();
+
+    if (inflater == null)
+      inflater = new Inflater(true);
+
+    try {
+      inflater.setInput(data, 0, length);
+
+      int resultLength = 0;
+
+      while (true) {
+        if (_result.length == resultLength)
+          growResult(resultLength);
+
+        int sublen = inflater.inflate(_result, resultLength,
+                                      _result.length - resultLength);
+
+        resultLength += sublen;
+
+        if (0 < _messageMax && _messageMax < resultLength)
+          throw new WebSocketProtocolException("message too large");
+
+        if (resultLength < _result.length
+            && (inflater.needsInput()
+                || inflater.finished()
+                || inflater.needsDictionary())) {
+          break;
+        }
+      }
+
+      return resultLength;
+    } catch (DataFormatException e) {
+      throw new WebSocketProtocolException(e.toString());
+    } finally {
+      inflater.reset();
+
+      if (! _freeInflater.free(inflater))
+        inflater.end();
+    }
+  }
+
+  private void growResult(int length)
+  {
+    byte []result = new byte[2 * _result.length];
+
+    System.arraycopy(_result, 0, result, 0, length);
+
+    _result = result;
+  }
+}
@@ -53,6 +53,8 @@ public class WebSocketOutputStream extends OutputStream
   private MessageState _state = MessageState.IDLE;
   private boolean _isAutoFlush = true;
 
+  private WebSocketDeflate _deflate;
+
   public WebSocketOutputStream(OutputStream os, byte []workingBuffer)
     throws IOException
   {
@@ -77,6 +79,14 @@ public class WebSocketOutputStream extends OutputStream
   {
     _isAutoFlush = isAutoFlush;
   }
+
+  /**
+   * Compresses messages with permessage-deflate.
+   */
+  public void setDeflate(WebSocketDeflate deflate)
+  {
+    _deflate = deflate;
+  }
   
   public void init()
   {
@@ -113,7 +123,7 @@ public class WebSocketOutputStream extends OutputStream
     
     byte []wsBuffer = _buffer;
 
-    if (length >= BINARY_PASSTHROUGH_SIZE) {
+    if (length >= BINARY_PASSTHROUGH_SIZE && _deflate == null) {
       complete(false);
       
       while (length > 0) {
@@ -181,6 +191,15 @@ public class WebSocketOutputStream extends OutputStream
     
     int offset = _offset;
     _offset = 4;
+
+    if (_deflate != null) {
+      _deflate.write(buffer, 4, offset - 4);
+
+      if (isFinal)
+        _deflate.writeMessage(_os, OP_BINARY);
+
+      return;
+    }
     
     int writeOffset = fillHeader(isFinal, offset); 
 
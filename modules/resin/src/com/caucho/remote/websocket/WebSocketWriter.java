@@ -51,6 +51,8 @@ public class WebSocketWriter extends Writer
   
   private char _savedPair;
 
+  private WebSocketDeflate _deflate;
+
   public WebSocketWriter(OutputStream os, byte []buffer)
     throws IOException
   {
@@ -62,6 +64,19 @@ public class WebSocketWriter extends Writer
     _buffer = buffer;
   }
   
+  public void setAutoFlush(boolean isAutoFlush)
+  {
+    _isAutoFlush = isAutoFlush;
+  }
+
+  /**
+   * Compresses messages with permessage-deflate.
+   */
+  public void setDeflate(WebSocketDeflate deflate)
+  {
+    _deflate = deflate;
+  }
+  
   public void init()
     throws IOException
   {
@@ -222,6 +237,17 @@ public class WebSocketWriter extends Writer
       int offset = _offset;
       _offset = 4;
       int length = offset - 4;
+
+      if (_deflate != null) {
+        _deflate.write(buffer, 4, length);
+
+        if (isFinal)
+          _deflate.writeMessage(_os, OP_TEXT);
+
+        _state = MessageState.CONT;
+
+        return;
+      }
       
       // don't flush empty chunk
       if (length == 0 && ! isFinal)
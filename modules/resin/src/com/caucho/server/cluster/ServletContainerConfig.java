@@ -414,6 +414,15 @@ public class ServletContainerConfig implements EnvironmentBean, SchemaBean
     _servletContainer.setConnectionErrorPage(errorPage);
   }
 
+  /**
+   * Sets the maximum number of hosts started concurrently.
+   */
+  @Configurable
+  public void setHostStartupParallelMax(int max)
+  {
+    _servletContainer.setHostStartupParallelMax(max);
+  }
+
   /**
    * Sets the root directory.
    */
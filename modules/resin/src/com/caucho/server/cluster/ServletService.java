@@ -716,6 +716,14 @@ public class ServletService
     return _headerCountMax;
   }
 
+  /**
+   * Sets the maximum number of hosts started concurrently.
+   */
+  public void setHostStartupParallelMax(int max)
+  {
+    _hostContainer.setStartupParallelMax(max);
+  }
+
   /**
    * Adds a WebAppDefault.
    */
@@ -38,6 +38,8 @@ import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Logger;
 
 import com.caucho.cloud.topology.TriadOwner;
+import com.caucho.env.meter.HistogramMeter;
+import com.caucho.env.meter.MeterService;
 import com.caucho.server.distcache.DataStore.DataItem;
 import com.caucho.server.distcache.LocalDataManager.DataItemLocal;
 import com.caucho.util.CurrentTime;
@@ -55,6 +57,11 @@ public class DistCacheEntry {
   
   private static final Logger log
     = Logger.getLogger(DistCacheEntry.class.getName());
+
+  private static final HistogramMeter _getTimeMeter
+    = MeterService.createHistogramMeter("Resin|Cache|Get");
+  private static final HistogramMeter _putTimeMeter
+    = MeterService.createHistogramMeter("Resin|Cache|Put");
   
   private final CacheStoreManager _cacheService;
   private final HashKey _keyHash;
@@ -162,7 +169,13 @@ public class DistCacheEntry {
   {
     long now = CurrentTime.getCurrentTime();
 
-    return get(now);
+    long startTime = _getTimeMeter.start();
+
+    try {
+      return get(now);
+    } finally {
+      _getTimeMeter.end(startTime);
+    }
   }
 
   /**
@@ -254,9 +267,15 @@ public class DistCacheEntry {
      // server/60a0 - on server '4', need to read update from triad
      // MnodeEntry mnodeValue = loadMnodeValue(now, true); // , false);
      
-     MnodeEntry mnodeValue = loadLocalMnodeValue();
+     long startTime = _putTimeMeter.start();
+
+     try {
+       MnodeEntry mnodeValue = loadLocalMnodeValue();
 
-     put(value, now, mnodeValue, true);
+       put(value, now, mnodeValue, true);
+     } finally {
+       _putTimeMeter.end(startTime);
+     }
    }
 
    /**
@@ -425,6 +425,15 @@ public class Host
     _webAppContainer.setDocumentDirectory(docDir);
   }
 
+  /**
+   * Sets the maximum number of web-apps started concurrently.
+   */
+  @Configurable
+  public void setStartupParallelMax(int max)
+  {
+    _webAppContainer.setStartupParallelMax(max);
+  }
+
   public WebAppContainer getWebAppContainer()
   {
     return _webAppContainer;
@@ -184,6 +184,14 @@ public class HostContainer implements InvocationBuilder {
     setRootDirectory(path);
   }
 
+  /**
+   * Sets the maximum number of hosts started concurrently.
+   */
+  public void setStartupParallelMax(int max)
+  {
+    _hostDeploy.setStartupParallelMax(max);
+  }
+
   /**
    * Adds a host default
    */
@@ -61,6 +61,7 @@ import com.caucho.network.listen.SocketLinkDuplexController;
 import com.caucho.remote.websocket.MaskedFrameInputStream;
 import com.caucho.remote.websocket.UnmaskedFrameInputStream;
 import com.caucho.remote.websocket.WebSocketConstants;
+import com.caucho.remote.websocket.WebSocketDeflate;
 import com.caucho.security.AbstractLogin;
 import com.caucho.security.Login;
 import com.caucho.server.cluster.ServletService;
@@ -1621,6 +1622,15 @@ public final class HttpServletRequestImpl extends AbstractCauchoRequest
     
     if (! isMasked)
       serverExtensions = "x-unmasked";
+
+    boolean isDeflate = WebSocketDeflate.isOffered(extensions);
+
+    if (! isDeflate) {
+    }
+    else if (serverExtensions == null)
+      serverExtensions = WebSocketDeflate.RESPONSE;
+    else
+      serverExtensions += ", " + WebSocketDeflate.RESPONSE;
     
     _response.setStatus(101);//, "Switching Protocols");
     _response.setHeader("Upgrade", "websocket");
@@ -1643,6 +1653,8 @@ public final class HttpServletRequestImpl extends AbstractCauchoRequest
       webSocket = new WebSocketContextImpl(this, _response, listener,
                                            new UnmaskedFrameInputStream());
     
+    webSocket.setDeflate(isDeflate);
+    
     SocketLinkDuplexController controller = _request.startDuplex(webSocket);
     webSocket.setController(controller);
     
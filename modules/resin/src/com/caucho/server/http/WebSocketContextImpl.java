@@ -29,8 +29,10 @@
 
 package com.caucho.server.http;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.util.concurrent.BlockingQueue;
@@ -42,9 +44,12 @@ import com.caucho.network.listen.SocketLinkDuplexController;
 import com.caucho.network.listen.SocketLinkDuplexListener;
 import com.caucho.remote.websocket.WebSocketBlockingQueue;
 import com.caucho.remote.websocket.WebSocketConstants;
+import com.caucho.remote.websocket.WebSocketBatchContext;
+import com.caucho.remote.websocket.WebSocketDeflate;
 import com.caucho.remote.websocket.WebSocketInputStream;
 import com.caucho.remote.websocket.WebSocketOutputStream;
 import com.caucho.remote.websocket.WebSocketPrintWriter;
+import com.caucho.remote.websocket.WebSocketProtocolException;
 import com.caucho.remote.websocket.WebSocketReader;
 import com.caucho.remote.websocket.WebSocketWriter;
 import com.caucho.remote.websocket.FrameInputStream;
@@ -53,7 +58,6 @@ import com.caucho.util.L10N;
 import com.caucho.vfs.ReadStream;
 import com.caucho.vfs.TempBuffer;
 import com.caucho.vfs.WriteStream;
-import com.caucho.websocket.WebSocketContext;
 import com.caucho.websocket.WebSocketEncoder;
 import com.caucho.websocket.WebSocketListener;
 
@@ -61,12 +65,15 @@ import com.caucho.websocket.WebSocketListener;
  * User facade for http requests.
  */
 class WebSocketContextImpl
-  implements WebSocketContext, WebSocketConstants, SocketLinkDuplexListener
+  implements WebSocketBatchContext, WebSocketConstants,
+             SocketLinkDuplexListener
 {
   private static final L10N L = new L10N(WebSocketContextImpl.class);
   private static final Logger log
     = Logger.getLogger(WebSocketContextImpl.class.getName());
 
+  private static final int DEFLATE_MESSAGE_MAX = 16 * 1024 * 1024;
+
   private final HttpServletRequestImpl _request;
   private final WebSocketListener _listener;
 
@@ -81,6 +88,9 @@ class WebSocketContextImpl
   private PrintWriter _textWriter;
   // private WebSocketReader _textIn;
 
+  private WebSocketDeflate _deflate;
+  private boolean _isAutoFlush = true;
+
   private boolean _isReadClosed;
   private AtomicBoolean _isWriteClosed = new AtomicBoolean();
 
@@ -101,6 +111,23 @@ class WebSocketContextImpl
     _is.init(this, controller.getReadStream());
   }
 
+  /**
+   * Enables permessage-deflate.  Reads and writes each have their own
+   * buffers since they run on different threads.  Only inbound messages
+   * are limited.
+   */
+  void setDeflate(boolean isDeflate)
+  {
+    if (isDeflate) {
+      _deflate = new WebSocketDeflate();
+      _is.setDeflate(new WebSocketDeflate(DEFLATE_MESSAGE_MAX));
+    }
+    else {
+      _deflate = null;
+      _is.setDeflate(null);
+    }
+  }
+
   @Override
   public void setTimeout(long timeout)
   {
@@ -122,17 +149,25 @@ class WebSocketContextImpl
   @Override
   public void setAutoFlush(boolean isAutoFlush)
   {
+    _isAutoFlush = isAutoFlush;
   }
 
   @Override
   public boolean isAutoFlush()
   {
-    return false;
+    return _isAutoFlush;
   }
 
   @Override
   public OutputStream startBinaryMessage()
   throws IOException
+  {
+    return startBinaryMessage(_isAutoFlush);
+  }
+
+  @Override
+  public OutputStream startBinaryMessage(boolean isAutoFlush)
+  throws IOException
   {
     if (_isWriteClosed.get())
       throw new IllegalStateException(L.l("{0} is closed for writing.",
@@ -142,6 +177,8 @@ class WebSocketContextImpl
       _binaryOut = new WebSocketOutputStream(_controller.getWriteStream(),
                                              TempBuffer.allocate().getBuffer());
 
+    _binaryOut.setDeflate(_deflate);
+    _binaryOut.setAutoFlush(isAutoFlush);
     _binaryOut.init();
 
     return _binaryOut;
@@ -150,6 +187,13 @@ class WebSocketContextImpl
   @Override
   public PrintWriter startTextMessage()
     throws IOException
+  {
+    return startTextMessage(_isAutoFlush);
+  }
+
+  @Override
+  public PrintWriter startTextMessage(boolean isAutoFlush)
+    throws IOException
   {
     if (_textOut == null) {
       _textOut = new WebSocketWriter(_controller.getWriteStream(),
@@ -157,6 +201,8 @@ class WebSocketContextImpl
       _textWriter = new WebSocketPrintWriter(_textOut);
     }
 
+    _textOut.setDeflate(_deflate);
+    _textOut.setAutoFlush(isAutoFlush);
     _textOut.init();
 
     return _textWriter;
@@ -274,6 +320,10 @@ class WebSocketContextImpl
 
     int opcode = _is.getOpcode();
 
+    if (_is.isCompressed()) {
+      return readCompressedMessage(opcode);
+    }
+
     switch (opcode) {
     case OP_BINARY:
       if (_binaryIn == null)
@@ -309,6 +359,63 @@ class WebSocketContextImpl
     return true;
   }
 
+  /**
+   * Reads and inflates a permessage-deflate message.
+   */
+  private boolean readCompressedMessage(int opcode)
+    throws IOException
+  {
+    WebSocketDeflate deflate = _is.getDeflate();
+
+    int length;
+
+    TempBuffer tBuf = TempBuffer.allocate();
+
+    try {
+      byte []buffer = tBuf.getBuffer();
+
+      while (true) {
+        long frameLength = _is.getLength();
+
+        if (frameLength > 0) {
+          int sublen = (int) Math.min(frameLength, buffer.length);
+
+          sublen = _is.read(buffer, 0, sublen);
+
+          if (sublen < 0)
+            return false;
+
+          deflate.write(buffer, 0, sublen);
+        }
+        else if (_is.isFinal()) {
+          break;
+        }
+        else if (! _is.readFrameHeader()) {
+          return false;
+        }
+      }
+
+      length = deflate.inflateMessage();
+    } catch (WebSocketProtocolException e) {
+      log.log(Level.FINE, e.toString(), e);
+
+      close(CLOSE_ERROR, "invalid compressed message");
+
+      return false;
+    } finally {
+      TempBuffer.free(tBuf);
+    }
+
+    InputStream is = new ByteArrayInputStream(deflate.getResult(), 0, length);
+
+    if (opcode == OP_BINARY)
+      _listener.onReadBinary(this, is);
+    else
+      _listener.onReadText(this, new InputStreamReader(is, "UTF-8"));
+
+    return true;
+  }
+
   protected WebSocketInputStream createWebSocketInputStream(FrameInputStream is)
     throws IOException
   {
@@ -89,8 +89,6 @@ public class AccessLog extends AbstractAccessLog implements AlarmListener
 
   private long _autoFlushTime = 60000;
 
-  private final CharBuffer _cb = new CharBuffer();
-
   private Alarm _alarm = new WeakAlarm(this);
   private boolean _isActive;
 
@@ -273,10 +271,7 @@ public class AccessLog extends AbstractAccessLog implements AlarmListener
     if (_format == null)
       _format = "%h %l %u %t \"%r\" %>s %b \"%{Referer}i\" \"%{User-Agent}i\"";
 
-    ArrayList<Segment> segments = parseFormat(_format);
-
-    _segments = new Segment[segments.size()];
-    segments.toArray(_segments);
+    _segments = compileFormat(parseFormat(_format));
 
     if (_timeFormat == null || _timeFormat.equals("")) {
       _timeFormat = "[%d/%b/%Y:%H:%M:%S %z]";
@@ -358,6 +353,46 @@ public class AccessLog extends AbstractAccessLog implements AlarmListener
     return segments;
   }
 
+  /**
+   * Compiles the parsed segments, folding constant segments like %l into
+   * the surrounding text so each run of text is a single copy.
+   */
+  private Segment []compileFormat(ArrayList<Segment> segments)
+  {
+    ArrayList<Segment> compiled = new ArrayList<Segment>();
+    StringBuilder text = new StringBuilder();
+
+    for (Segment segment : segments) {
+      switch (segment._code) {
+      case Segment.TEXT:
+      case Segment.CHAR:
+        text.append(segment._string);
+        break;
+
+      case 'l':
+        text.append('-');
+        break;
+
+      default:
+        if (text.length() > 0) {
+          compiled.add(new Segment(this, Segment.TEXT, text.toString()));
+          text.setLength(0);
+        }
+
+        compiled.add(segment);
+        break;
+      }
+    }
+
+    if (text.length() > 0)
+      compiled.add(new Segment(this, Segment.TEXT, text.toString()));
+
+    Segment []segmentArray = new Segment[compiled.size()];
+    compiled.toArray(segmentArray);
+
+    return segmentArray;
+  }
+
   /**
    * Logs a request using the current format.
    */
@@ -430,7 +465,6 @@ public class AccessLog extends AbstractAccessLog implements AlarmListener
     throws IOException
   {
     final AbstractHttpRequest absRequest = request.getAbstractHttpRequest();
-    CharBuffer cb = _cb;
 
     int len = _segments.length;
     for (int i = 0; i < len; i++) {
@@ -442,9 +476,8 @@ public class AccessLog extends AbstractAccessLog implements AlarmListener
       case Segment.TEXT:
         int sublen = segment._data.length;
         byte []data = segment._data;
-        for (int j = 0; j < sublen; j++) {
-          buffer[offset++] = data[j];
-        }
+        System.arraycopy(data, 0, buffer, offset, sublen);
+        offset += sublen;
         break;
 
       case Segment.CHAR:
@@ -482,7 +515,7 @@ public class AccessLog extends AbstractAccessLog implements AlarmListener
         value = response.getHeader(segment._string);
         
         if (cookies != null && cookiesSize > 0) {
-          cb.clear();
+          CharBuffer cb = new CharBuffer();
           
           if (value != null) {
             cb.append(value);
@@ -704,26 +737,17 @@ public class AccessLog extends AbstractAccessLog implements AlarmListener
   {
     int length = s.length();
 
-    _cb.ensureCapacity(length);
-    char []cBuf = _cb.getBuffer();
-
-    s.getChars(0, length, cBuf, 0);
-
-    for (int i = length - 1; i >= 0; i--)
-      buffer[offset + i] = (byte) cBuf[i];
+    // log() is called from many request threads, so no shared buffer
+    for (int i = 0; i < length; i++)
+      buffer[offset + i] = (byte) s.charAt(i);
 
     return offset + length;
   }
   
   private int print(byte []buffer, int offset, String s, int sOff, int sLen)
   {
-    _cb.ensureCapacity(sLen);
-    char []cBuf = _cb.getBuffer();
-
-    s.getChars(sOff, sLen, cBuf, 0);
-
-    for (int i = sLen - 1; i >= 0; i--) {
-      buffer[offset + i] = (byte) cBuf[i];
+    for (int i = 0; i < sLen; i++) {
+      buffer[offset + i] = (byte) s.charAt(sOff + i);
     }
 
     return offset + sLen;
@@ -157,7 +157,7 @@ public class AccessLogWriter extends AbstractRolloverLog
     expire = CurrentTime.getCurrentTimeActual() + timeout;
 
     while (true) {
-      if (_logWriterTask.isEmpty()) {
+      if (_logWriterTask.isEmpty() && _logWriterTask.isBatchEmpty()) {
         return;
       }
 
@@ -226,7 +226,17 @@ public class AccessLogWriter extends AbstractRolloverLog
   }
 
   class LogWriterTask extends AbstractWorkerQueue<LogBuffer> {
+    // small relative to the free list, so batched buffers don't starve
+    // request threads waiting in isBufferAvailable()
+    private static final int BATCH_MAX = 8;
+
     private final String _threadName;
+
+    // buffers are written in batches to take the log lock once
+    private final LogBuffer []_batch = new LogBuffer[BATCH_MAX];
+    private final byte [][]_batchBuffers = new byte[BATCH_MAX][];
+    private final int []_batchLengths = new int[BATCH_MAX];
+    private volatile int _batchCount;
     
     LogWriterTask()
     {
@@ -248,18 +258,56 @@ public class AccessLogWriter extends AbstractRolloverLog
         return;
         
       }
+
+      int count = _batchCount;
+
+      _batch[count] = value;
+      _batchBuffers[count] = value.getBuffer();
+      _batchLengths[count] = value.getLength();
+
+      _batchCount = count + 1;
+
+      if (BATCH_MAX <= _batchCount || ! isBufferAvailable()) {
+        writeBatch();
+      }
+    }
+
+    /**
+     * True when no buffers are waiting in the current batch.
+     */
+    boolean isBatchEmpty()
+    {
+      return _batchCount == 0;
+    }
+
+    private void writeBatch()
+    {
+      int count = _batchCount;
+
       try {
-        write(value.getBuffer(), 0, value.getLength());
+        write(_batchBuffers, _batchLengths, count);
       } catch (Throwable e) {
         log.log(Level.WARNING, e.toString(), e);
       } finally {
-        freeBuffer(value);
+        for (int i = 0; i < count; i++) {
+          LogBuffer buffer = _batch[i];
+          _batch[i] = null;
+          _batchBuffers[i] = null;
+
+          freeBuffer(buffer);
+        }
+
+        // cleared after the write, so waitForFlush sees the batch
+        // until it's in the log stream
+        _batchCount = 0;
       }
     }
 
     @Override
     public void onProcessComplete()
     {
+      writeBatch();
+
       try {
         flushStream();
       } catch (IOException e) {
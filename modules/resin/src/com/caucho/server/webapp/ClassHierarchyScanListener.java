@@ -162,6 +162,12 @@ class ClassHierarchyScanListener implements ScanListener {
   {
     return true;
   }
+
+  @Override
+  public boolean isRootScanCandidate(Path root, String packageRoot)
+  {
+    return true;
+  }
   
   static class Entry {
     private final String _name;
@@ -5228,6 +5228,12 @@ public class WebApp extends ServletContextImpl
       return true;
     }
 
+    @Override
+    public boolean isRootScanCandidate(Path root, String packageRoot)
+    {
+      return true;
+    }
+
     @Override
     public ScanClass scanClass(Path root, String packageRoot,
                                String name, int modifiers)
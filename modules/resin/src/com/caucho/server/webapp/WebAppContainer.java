@@ -287,6 +287,14 @@ public class WebAppContainer
     Environment.setAttribute("caucho.server.access-log", log);
   }
 
+  /**
+   * Sets the maximum number of web-apps started concurrently.
+   */
+  public void setStartupParallelMax(int max)
+  {
+    _appDeploySpi.setStartupParallelMax(max);
+  }
+
   /**
    * Adds an error page
    */
@@ -37,6 +37,7 @@ import java.net.URL;
 import java.util.Locale;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
 
 import javax.servlet.GenericServlet;
 import javax.servlet.RequestDispatcher;
@@ -50,6 +51,8 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import com.caucho.env.service.ResinSystem;
+import com.caucho.env.thread.ThreadPool;
+import com.caucho.java.WorkDir;
 import com.caucho.loader.EnvironmentLocal;
 import com.caucho.server.http.CauchoRequest;
 import com.caucho.server.http.CauchoResponse;
@@ -67,6 +70,7 @@ import com.caucho.vfs.CaseInsensitive;
 import com.caucho.vfs.Path;
 import com.caucho.vfs.ReadStream;
 import com.caucho.vfs.Vfs;
+import com.caucho.vfs.WriteStream;
 
 /**
  * Serves static files.  The cache headers are automatically set on these
@@ -78,6 +82,9 @@ public class FileServlet extends GenericServlet {
   private static final Logger log
     = Logger.getLogger(FileServlet.class.getName());
 
+  // files smaller than this aren't worth a gzip encoding
+  private static final long GZIP_MIN_LENGTH = 256;
+
   private static final EnvironmentLocal<LruCache<String,Cache>> _pathCacheLocal
     = new EnvironmentLocal<LruCache<String,Cache>>();
 
@@ -95,6 +102,9 @@ public class FileServlet extends GenericServlet {
   private boolean _isGenerateSession;
   private String _characterEncoding;
 
+  private boolean _isGzip;
+  private Path _gzipDir;
+
   public FileServlet()
   {
     ResinSystem resin = ResinSystem.getCurrent();
@@ -136,6 +146,14 @@ public class FileServlet extends GenericServlet {
     _isGenerateSession = isGenerateSession;
   }
 
+  /**
+   * Flag to serve cached gzip encodings of compressible files.
+   */
+  public void setGzip(boolean isGzip)
+  {
+    _isGzip = isGzip;
+  }
+
   /**
    * Clears the cache
    */
@@ -176,6 +194,13 @@ public class FileServlet extends GenericServlet {
     String encoding = getInitParameter("character-encoding");
     if (encoding != null && ! "".equals(encoding))
       _characterEncoding = encoding;
+
+    String gzip = getInitParameter("gzip");
+    if (gzip != null && gzip.equals("true"))
+      _isGzip = true;
+
+    if (_isGzip)
+      _gzipDir = WorkDir.getLocalWorkDir().lookup("_file_gzip");
   }
 
   @Override
@@ -317,6 +342,9 @@ public class FileServlet extends GenericServlet {
       _pathCache.put(cacheUrl, cache);
     }
     else if (cache.isModified()) {
+      if (_gzipDir != null)
+        cache.removeGzip(_gzipDir);
+
       cache = new Cache(cache.getFilePath(),
                         cache.getJarPath(),
                         cache.getRelPath(),
@@ -365,8 +393,24 @@ public class FileServlet extends GenericServlet {
       return;
     }
 
-    String ifMatch = req.getHeader("If-None-Match");
     String etag = cache.getEtag();
+    Path gzipPath = null;
+
+    if (_isGzip
+        && ! isInclude
+        && GZIP_MIN_LENGTH <= cache.getLength()
+        && isGzipType(cache.getMimeType())) {
+      res.addHeader("Vary", "Accept-Encoding");
+
+      // ranges are served from the identity encoding
+      if (isAcceptGzip(req) && req.getHeader("Range") == null)
+        gzipPath = cache.getGzipPath(_gzipDir);
+
+      if (gzipPath != null)
+        etag = cache.getGzipEtag();
+    }
+
+    String ifMatch = req.getHeader("If-None-Match");
 
     if (ifMatch != null && ifMatch.equals(etag)) {
       res.addHeader("ETag", etag);
@@ -430,6 +474,13 @@ public class FileServlet extends GenericServlet {
       res.setContentType(mime);
     }
 
+    if (gzipPath != null) {
+      res.setHeader("Content-Encoding", "gzip");
+
+      sendGzip(res, cache, gzipPath, method.equalsIgnoreCase("HEAD"));
+      return;
+    }
+
     if (method.equalsIgnoreCase("HEAD")) {
       if (res instanceof CauchoResponse) {
         CauchoResponse cRes = (CauchoResponse) res;
@@ -475,6 +526,75 @@ public class FileServlet extends GenericServlet {
     }
   }
   
+  private void sendGzip(HttpServletResponse res,
+                        Cache cache,
+                        Path gzipPath,
+                        boolean isHead)
+    throws IOException
+  {
+    long length = cache.getGzipLength();
+
+    if (res instanceof CauchoResponse) {
+      CauchoResponse cRes = (CauchoResponse) res;
+
+      cRes.setContentLength(length);
+
+      if (! isHead)
+        cRes.getResponseStream().sendFile(gzipPath, 0, length);
+    }
+    else {
+      res.setContentLength((int) length);
+
+      if (! isHead)
+        gzipPath.writeToStream(res.getOutputStream());
+    }
+  }
+
+  /**
+   * True if the client accepts a gzip encoding.
+   */
+  private boolean isAcceptGzip(HttpServletRequest req)
+  {
+    String accept = req.getHeader("Accept-Encoding");
+
+    if (accept == null)
+      return false;
+
+    for (String item : accept.split(",")) {
+      item = item.trim();
+
+      if (! item.startsWith("gzip"))
+        continue;
+
+      int p = item.indexOf("q=");
+
+      if (p < 0)
+        return true;
+
+      try {
+        return Double.parseDouble(item.substring(p + 2).trim()) > 0;
+      } catch (NumberFormatException e) {
+        return false;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * True for content types that benefit from compression.
+   */
+  private boolean isGzipType(String contentType)
+  {
+    if (contentType == null)
+      return false;
+
+    return (contentType.startsWith("text/")
+            || contentType.endsWith("javascript")
+            || contentType.endsWith("json")
+            || contentType.endsWith("xml"));
+  }
+
   private boolean isText(String contentType)
   {
     if (contentType == null) {
@@ -732,10 +852,17 @@ public class FileServlet extends GenericServlet {
     private long _length;
     private long _lastModified = 0xdeadbabe1ee7d00dL;
     private String _relPath;
+    private long _etagHash;
     private String _etag;
     private String _lastModifiedString;
     private String _mimeType;
 
+    private boolean _isGzipChecked;
+    private boolean _isGzipBuilding;
+    private boolean _isGzipRemoved;
+    private volatile Path _gzipPath;
+    private long _gzipLength;
+
     Cache(Path path, Path jarPath, String relPath, String mimeType)
     {
       _path = path;
@@ -786,6 +913,148 @@ public class FileServlet extends GenericServlet {
       return _etag;
     }
 
+    String getGzipEtag()
+    {
+      return _etag.substring(0, _etag.length() - 1) + "-gzip\"";
+    }
+
+    long getGzipLength()
+    {
+      return _gzipLength;
+    }
+
+    /**
+     * Returns the gzip encoding from the work directory, scheduling its
+     * build on the first request.  Encodings are named by the etag, so
+     * they survive restarts.  Requests until the build completes use the
+     * identity encoding.
+     */
+    Path getGzipPath(Path gzipDir)
+    {
+      Path gzipPath = _gzipPath;
+
+      if (gzipPath != null)
+        return gzipPath;
+
+      synchronized (this) {
+        if (_isGzipChecked)
+          return null;
+
+        _isGzipChecked = true;
+      }
+
+      gzipPath = gzipDir.lookup(Long.toHexString(_etagHash) + ".gz");
+
+      if (gzipPath.canRead()) {
+        setGzipPath(gzipPath);
+
+        return _gzipPath;
+      }
+
+      synchronized (this) {
+        _isGzipBuilding = true;
+      }
+
+      ThreadPool.getCurrent().schedule(new GzipTask(gzipDir, gzipPath));
+
+      return null;
+    }
+
+    /**
+     * Removes the gzip encoding when the file is replaced, so old
+     * versions don't accumulate in the work directory.
+     */
+    void removeGzip(Path gzipDir)
+    {
+      synchronized (this) {
+        _isGzipRemoved = true;
+
+        // a build in progress removes its own result
+        if (_isGzipBuilding)
+          return;
+      }
+
+      try {
+        gzipDir.lookup(Long.toHexString(_etagHash) + ".gz").remove();
+      } catch (IOException e) {
+        log.log(Level.FINEST, e.toString(), e);
+      }
+    }
+
+    private void setGzipPath(Path gzipPath)
+    {
+      long length = gzipPath.getLength();
+
+      // only use the encoding when it's an improvement
+      if (0 < length && length < _length) {
+        _gzipLength = length;
+        _gzipPath = gzipPath;
+      }
+    }
+
+    /**
+     * Builds the gzip encoding outside the request thread.
+     */
+    class GzipTask implements Runnable {
+      private final Path _gzipDir;
+      private final Path _gzipPath;
+
+      GzipTask(Path gzipDir, Path gzipPath)
+      {
+        _gzipDir = gzipDir;
+        _gzipPath = gzipPath;
+      }
+
+      public void run()
+      {
+        String name = Long.toHexString(_etagHash);
+        boolean isRemoved = false;
+
+        try {
+          _gzipDir.mkdirs();
+
+          Path tempPath
+            = _gzipDir.lookup(name + "-"
+                              + Long.toHexString(RandomUtil.getRandomLong())
+                              + ".tmp");
+
+          WriteStream os = tempPath.openWrite();
+
+          try {
+            GZIPOutputStream gzip = new GZIPOutputStream(os);
+
+            _pathResolved.writeToStream(gzip);
+
+            gzip.close();
+          } finally {
+            os.close();
+          }
+
+          if (! tempPath.renameTo(_gzipPath)) {
+            tempPath.remove();
+          }
+        } catch (IOException e) {
+          log.log(Level.FINE, e.toString(), e);
+        } finally {
+          synchronized (Cache.this) {
+            _isGzipBuilding = false;
+            isRemoved = _isGzipRemoved;
+
+            if (! isRemoved)
+              setGzipPath(_gzipPath);
+          }
+        }
+
+        if (isRemoved) {
+          try {
+            _gzipPath.remove();
+          } catch (IOException e) {
+            log.log(Level.FINEST, e.toString(), e);
+          }
+        }
+      }
+    }
+
     long getLastModified()
     {
       return _lastModified;
@@ -833,6 +1102,8 @@ public class FileServlet extends GenericServlet {
       if (_mimeType != null) {
         etagHash = Crc64.generate(etagHash, _mimeType);
       }
+
+      _etagHash = etagHash;
       
       StringBuilder sb = new StringBuilder();
       sb.append('"');
@@ -493,6 +493,23 @@ public class DBPool
     _connectionPool.setMinIdleCount(count);
   }
 
+  /**
+   * Returns the max number of idle connections pinged at once.
+   */
+  public int getValidateBatchSize()
+  {
+    return _connectionPool.getValidateBatchSize();
+  }
+
+  /**
+   * Sets the max number of idle connections pinged at once by the
+   * background ping.
+   */
+  public void setValidateBatchSize(int size)
+  {
+    _connectionPool.setValidateBatchSize(size);
+  }
+
   /**
    * Get the time in milliseconds a connection will remain in the pool before
    * being closed.
@@ -762,6 +779,15 @@ public class DBPool
     _connectionPool.setXATransaction(_poolImpl.isXATransaction());
     _connectionPool.setLocalTransaction(_poolImpl.isLocalTransaction());
 
+    // idle connections are pinged in the background instead of on reuse
+    long pingInterval = _poolImpl.getPingInterval();
+
+    if (_poolImpl.isPing()
+        && _poolImpl.getPingQuery() != null
+        && 0 < pingInterval && pingInterval < Long.MAX_VALUE / 2) {
+      _connectionPool.setValidateInterval(pingInterval);
+    }
+
     ManagedConnectionFactory mcf = _poolImpl.getManagedConnectionFactory();
 
 
@@ -258,6 +258,33 @@ public class DatabaseAdmin extends AbstractManagedObject
     return _jcaPool.getLastFailTime();
   }
 
+  /**
+   * Returns the total idle connections validated in the background.
+   */
+  @Override
+  public long getValidateCountTotal()
+  {
+    return _jcaPool.getValidateCountTotal();
+  }
+
+  /**
+   * Returns the total idle connections evicted by validation.
+   */
+  @Override
+  public long getValidateFailCountTotal()
+  {
+    return _jcaPool.getValidateFailCountTotal();
+  }
+
+  /**
+   * Returns the total time spent validating idle connections.
+   */
+  @Override
+  public long getValidateTimeTotal()
+  {
+    return _jcaPool.getValidateTimeTotal();
+  }
+
   //
   // Operations
   //
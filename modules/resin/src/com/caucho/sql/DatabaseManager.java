@@ -94,7 +94,7 @@ public class DatabaseManager {
   {
     String driver = findDriverByUrl(url);
 
-    return getLocalManager().findDatabaseImpl(url, url, driver);
+    return getLocalManager().findDatabaseImpl(url, url, driver, 0);
   }
 
   /**
@@ -103,7 +103,7 @@ public class DatabaseManager {
   public static DataSource findDatabase(String url, String driver)
     throws SQLException
   {
-    return getLocalManager().findDatabaseImpl(url, url, driver);
+    return getLocalManager().findDatabaseImpl(url, url, driver, 0);
   }
 
   /**
@@ -112,7 +112,19 @@ public class DatabaseManager {
   public static DataSource findDatabase(String id, String url, String driver)
     throws SQLException
   {
-    return getLocalManager().findDatabaseImpl(id, url, driver);
+    return getLocalManager().findDatabaseImpl(id, url, driver, 0);
+  }
+
+  /**
+   * Returns a matching dbpool, creating it with the given prepared
+   * statement cache size.
+   */
+  public static DataSource findDatabase(String id, String url, String driver,
+                                        int preparedStatementCacheSize)
+    throws SQLException
+  {
+    return getLocalManager().findDatabaseImpl(id, url, driver,
+                                              preparedStatementCacheSize);
   }
 
   public static void closeDatabase(DataSource ds)
@@ -125,7 +137,8 @@ public class DatabaseManager {
    */
   private DataSource findDatabaseImpl(String id,
                                       String url,
-                                      String driverName)
+                                      String driverName,
+                                      int preparedStatementCacheSize)
     throws SQLException
   {
     try {
@@ -146,6 +159,9 @@ public class DatabaseManager {
           driver.setType(driverClass);
           driver.setURL(url);
 
+          if (preparedStatementCacheSize > 0)
+            db.setPreparedStatementCacheSize(preparedStatementCacheSize);
+
           db.init();
 
           _databaseMap.put(url, db);
@@ -72,6 +72,10 @@ public class ManagedConnectionImpl
     = Logger.getLogger(ManagedConnectionImpl.class.getName());
   protected static L10N L = new L10N(ManagedConnectionImpl.class);
 
+  // prepared statement cache keys encode the result set type above
+  // the concurrency
+  private static final int RESULT_SET_SHIFT = 16;
+
   // Identifier for spy, etc.
   private final String _id;
 
@@ -204,7 +208,7 @@ public class ManagedConnectionImpl
     if (_connException != null)
       throw _connException;
 
-    if (! ping())
+    if (! ping(false))
       return null;
     
     _lastEventTime = CurrentTime.getCurrentTime();
@@ -434,26 +438,42 @@ public class ManagedConnectionImpl
   /**
    * Returns a new or cached prepared statement.
    */
+  PreparedStatement prepareStatement(UserConnection uConn, String sql)
+    throws SQLException
+  {
+    return prepareCachedStatement(uConn, sql, -1);
+  }
+
+  /**
+   * Returns a new or cached prepared statement with the
+   * autoGeneratedKeys flag.
+   */
   PreparedStatement prepareStatement(UserConnection uConn,
                                      String sql,
                                      int resultType)
     throws SQLException
   {
-    Connection conn = getDriverConnection();
-
-    if (conn == null)
-      throw new IllegalStateException(L.l("can't prepare statement from closed connection"));
-
-    if (resultType > 0)
-      return conn.prepareStatement(sql, resultType);
-    else
-      return conn.prepareStatement(sql);
+    return prepareCachedStatement(uConn, sql, resultType > 0 ? resultType : -1);
   }
 
   /**
-   * Returns a new or cached prepared statement.
+   * Returns a new or cached prepared statement with the result set
+   * type and concurrency.
    */
-  PreparedStatement prepareStatement(UserConnection uConn, String sql)
+  PreparedStatement prepareStatement(UserConnection uConn,
+                                     String sql,
+                                     int resultSetType,
+                                     int resultSetConcurrency)
+    throws SQLException
+  {
+    int resultType = (resultSetType << RESULT_SET_SHIFT) | resultSetConcurrency;
+
+    return prepareCachedStatement(uConn, sql, resultType);
+  }
+
+  private PreparedStatement prepareCachedStatement(UserConnection uConn,
+                                                   String sql,
+                                                   int resultType)
     throws SQLException
   {
     PreparedStatementKey key = _key;
@@ -464,13 +484,13 @@ public class ManagedConnectionImpl
       throw new IllegalStateException(L.l("can't prepare statement from closed connection"));
 
     if (key == null) {
-      return conn.prepareStatement(sql);
+      return prepareDriverStatement(conn, sql, resultType);
     }
 
     boolean hasItem = false;
 
     synchronized (key) {
-      key.init(sql);
+      key.init(sql, resultType);
 
       PreparedStatementCacheItem item = _preparedStatementCache.get(key);
 
@@ -485,12 +505,12 @@ public class ManagedConnectionImpl
     }
 
     PreparedStatement pStmt;
-    pStmt = conn.prepareStatement(sql);
+    pStmt = prepareDriverStatement(conn, sql, resultType);
 
     if (hasItem)
       return pStmt;
 
-    key = new PreparedStatementKey(sql);
+    key = new PreparedStatementKey(sql, resultType);
 
     PreparedStatementCacheItem item;
     item = new PreparedStatementCacheItem(key, pStmt, this);
@@ -505,6 +525,26 @@ public class ManagedConnectionImpl
     return upStmt;
   }
 
+  /**
+   * Prepares a driver statement for the encoded result type: -1 for
+   * the default, an autoGeneratedKeys flag, or a result set type and
+   * concurrency pair.
+   */
+  private PreparedStatement prepareDriverStatement(Connection conn,
+                                                   String sql,
+                                                   int resultType)
+    throws SQLException
+  {
+    if (resultType < 0)
+      return conn.prepareStatement(sql);
+    else if (resultType < (1 << RESULT_SET_SHIFT))
+      return conn.prepareStatement(sql, resultType);
+    else
+      return conn.prepareStatement(sql,
+                                   resultType >> RESULT_SET_SHIFT,
+                                   resultType & ((1 << RESULT_SET_SHIFT) - 1));
+  }
+
   /**
    * Removes a cached item.
    */
@@ -791,12 +831,14 @@ public class ManagedConnectionImpl
   }
 
   /**
-   * Returns true if the connection is valid.
+   * Returns true if the connection is valid, pinging even if the
+   * connection was used within the ping interval. Used for background
+   * validation of idle connections.
    */
   boolean isValid()
   {
     try {
-      return ping();
+      return ping(true);
     } catch (Exception e) {
       log.log(Level.FINE, e.toString(), e);
 
@@ -806,8 +848,10 @@ public class ManagedConnectionImpl
 
   /**
    * Checks the validity with ping.
+   *
+   * @param isForce if true, ping even if used within the ping interval
    */
-  private boolean ping()
+  private boolean ping(boolean isForce)
     throws ResourceException
   {
     DBPoolImpl dbPool = _factory.getDBPool();
@@ -825,7 +869,7 @@ public class ManagedConnectionImpl
       return false;
     }
 
-    if (isPingRequired) {
+    if (isPingRequired || isForce) {
     }
     else if (pingInterval > 0 && now < _lastEventTime + pingInterval) {
       return true;
@@ -270,7 +270,8 @@ public class UserConnection implements java.sql.Connection {
     }
 
     try {
-      stmt = getDriverConnection().prepareStatement(sql, resultSetType, resultSetConcurrency);
+      stmt = getMConn().prepareStatement(this, sql,
+                                         resultSetType, resultSetConcurrency);
     } catch (SQLException e) {
       onFatalException(e);
       
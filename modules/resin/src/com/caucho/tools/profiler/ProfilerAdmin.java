@@ -93,6 +93,45 @@ public class ProfilerAdmin
     _profilerManager.reset();
   }
 
+  public boolean isSampling()
+  {
+    return _profilerManager.getSamplingProfiler().isActive();
+  }
+
+  /**
+   * Starts sampling request stacks with the period in milliseconds.
+   */
+  public void startSampling(long period)
+  {
+    _profilerManager.startSampling(period);
+  }
+
+  public void stopSampling()
+  {
+    _profilerManager.stopSampling();
+  }
+
+  public long getSampleCountTotal()
+  {
+    return _profilerManager.getSamplingProfiler().getSampleCountTotal();
+  }
+
+  /**
+   * Returns the time spent sampling in nanoseconds.
+   */
+  public long getSampleTimeTotal()
+  {
+    return _profilerManager.getSamplingProfiler().getSampleTimeTotal();
+  }
+
+  /**
+   * Returns the sampled stacks in the folded flame graph format.
+   */
+  public String getFoldedStacks()
+  {
+    return _profilerManager.getSamplingProfiler().getFoldedStacks();
+  }
+
   // Snapshot - jmx ugh.
 
   public TabularData snapshot()
@@ -29,6 +29,7 @@
 
 package com.caucho.tools.profiler;
 
+import com.caucho.config.types.Period;
 import com.caucho.util.CharBuffer;
 import com.caucho.util.L10N;
 
@@ -60,6 +61,9 @@ public class ProfilerFilter
 
   private boolean _isUseQuery = false;
 
+  private long _samplePeriod;
+  private boolean _isSampling;
+
   public ProfilerFilter()
   {
   }
@@ -78,9 +82,22 @@ public class ProfilerFilter
     return _isUseQuery;
   }
 
+  /**
+   * Starts the sampling profiler with the given period, instead of
+   * timing each request.
+   */
+  public void setSamplePeriod(Period period)
+  {
+    _samplePeriod = period.getPeriod();
+  }
+
   public void init(FilterConfig filterConfig)
     throws ServletException
   {
+    if (_samplePeriod > 0) {
+      _profilerManager.startSampling(_samplePeriod);
+      _isSampling = true;
+    }
   }
 
   public void doFilter(ServletRequest servletRequest,
@@ -138,6 +155,23 @@ public class ProfilerFilter
       name = nameBuilder.toString();
     }
 
+    SamplingProfiler sampler = _profilerManager.getSamplingProfiler();
+
+    if (sampler.isActive()) {
+      // keyed by servlet, since path-info and query would give each
+      // url its own stack and overflow the sampler's table
+      String oldName = sampler.enter(request.getContextPath() + servletPath);
+
+      try {
+        chain.doFilter(request, response);
+      }
+      finally {
+        sampler.exit(oldName);
+      }
+
+      return;
+    }
+
     ProfilerPoint profilerPoint = _profilerManager.getProfilerPoint(name);
 
     if (log.isLoggable(Level.FINEST))
@@ -155,5 +189,9 @@ public class ProfilerFilter
 
   public void destroy()
   {
+    if (_isSampling) {
+      _isSampling = false;
+      _profilerManager.stopSampling();
+    }
   }
 }
@@ -43,6 +43,18 @@ public interface ProfilerMBean {
 
   public void reset();
 
+  public boolean isSampling();
+
+  public void startSampling(long period);
+
+  public void stopSampling();
+
+  public long getSampleCountTotal();
+
+  public long getSampleTimeTotal();
+
+  public String getFoldedStacks();
+
   TabularData snapshot()
     throws Exception;
 }
@@ -55,6 +55,8 @@ public class ProfilerManager {
 
   private boolean _isEnabled = false;
 
+  private final SamplingProfiler _samplingProfiler = new SamplingProfiler();
+
   private ProfilerManager()
   {
     new ProfilerAdmin(this);
@@ -122,12 +124,36 @@ public class ProfilerManager {
     return _root.addProfilerPoint(name);
   }
 
+  /**
+   * Returns the sampling profiler.
+   */
+  public SamplingProfiler getSamplingProfiler()
+  {
+    return _samplingProfiler;
+  }
+
+  /**
+   * Starts sampling request stacks with the given period in
+   * milliseconds.
+   */
+  public void startSampling(long period)
+  {
+    _samplingProfiler.setPeriod(period);
+    _samplingProfiler.start();
+  }
+
+  public void stopSampling()
+  {
+    _samplingProfiler.stop();
+  }
+
   /**
    * Clear all profiling information.
    */
   public void reset()
   {
     _root.reset();
+    _samplingProfiler.reset();
   }
 
   public String toString()
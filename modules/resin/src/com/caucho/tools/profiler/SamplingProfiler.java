@@ -0,0 +1,289 @@
+/*
+ * Copyright (c) 1998-2012 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Resin(R) Open Source
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Resin Open Source is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Resin Open Source is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Resin Open Source; if not, write to the
+ *   Free SoftwareFoundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ *
+ * @author Sam
+ */
+
+
+package com.caucho.tools.profiler;
+
+import com.caucho.util.Alarm;
+import com.caucho.util.AlarmListener;
+import com.caucho.util.WeakAlarm;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Sampling profiler for request threads.
+ * <p/>
+ * Request threads register the current request name while the request
+ * runs. An alarm periodically samples the registered threads' stacks
+ * and counts each distinct stack under the request name, so the cost
+ * is independent of the number of calls a request makes.
+ * <p/>
+ * The counts are reported in the folded format used by flame graph
+ * tools: one line per stack, frames from the root separated by ';',
+ * followed by the sample count.
+ */
+public class SamplingProfiler
+  implements AlarmListener
+{
+  private static final Logger log
+    = Logger.getLogger(SamplingProfiler.class.getName());
+
+  private static final long DEFAULT_PERIOD = 20;
+
+  // max distinct stacks, so a pathological app can't grow the table
+  private static final int STACK_MAX = 16 * 1024;
+
+  private static final String OVERFLOW_STACK = "[overflow]";
+
+  // leaf-side marker for stacks deeper than the max depth
+  private static final String TRUNCATED_FRAME = "[truncated]";
+
+  private final ConcurrentHashMap<Thread,String> _activeThreads
+    = new ConcurrentHashMap<Thread,String>();
+
+  private final ConcurrentHashMap<String,AtomicLong> _stackCounts
+    = new ConcurrentHashMap<String,AtomicLong>();
+
+  private final AtomicLong _sampleCountTotal = new AtomicLong();
+  private final AtomicLong _sampleTimeTotal = new AtomicLong();
+
+  private long _period = DEFAULT_PERIOD;
+  private int _maxDepth = 64;
+
+  private volatile boolean _isActive;
+  private Alarm _alarm;
+
+  SamplingProfiler()
+  {
+  }
+
+  /**
+   * Sets the sample period in milliseconds.
+   */
+  public void setPeriod(long period)
+  {
+    _period = Math.max(period, 1);
+  }
+
+  public long getPeriod()
+  {
+    return _period;
+  }
+
+  /**
+   * Sets the max number of frames recorded for a stack.
+   */
+  public void setMaxDepth(int depth)
+  {
+    _maxDepth = Math.max(depth, 1);
+  }
+
+  public boolean isActive()
+  {
+    return _isActive;
+  }
+
+  public synchronized void start()
+  {
+    if (_isActive)
+      return;
+
+    _isActive = true;
+
+    _alarm = new WeakAlarm(this);
+    _alarm.queue(_period);
+  }
+
+  public synchronized void stop()
+  {
+    _isActive = false;
+
+    Alarm alarm = _alarm;
+    _alarm = null;
+
+    if (alarm != null)
+      alarm.dequeue();
+  }
+
+  /**
+   * Registers the current thread as running the named request,
+   * returning the name of an enclosing request on the thread.
+   */
+  public String enter(String name)
+  {
+    return _activeThreads.put(Thread.currentThread(), name);
+  }
+
+  /**
+   * Unregisters the current thread after a request, restoring the
+   * enclosing request's name.
+   */
+  public void exit(String oldName)
+  {
+    if (oldName != null)
+      _activeThreads.put(Thread.currentThread(), oldName);
+    else
+      _activeThreads.remove(Thread.currentThread());
+  }
+
+  /**
+   * Samples the registered request threads.
+   */
+  public void handleAlarm(Alarm alarm)
+  {
+    if (! _isActive)
+      return;
+
+    long startTime = System.nanoTime();
+
+    try {
+      for (Map.Entry<Thread,String> entry : _activeThreads.entrySet()) {
+        sample(entry.getKey(), entry.getValue());
+      }
+    } catch (Exception e) {
+      log.log(Level.FINE, e.toString(), e);
+    } finally {
+      _sampleTimeTotal.addAndGet(System.nanoTime() - startTime);
+
+      if (_isActive)
+        alarm.queue(_period);
+    }
+  }
+
+  private void sample(Thread thread, String name)
+  {
+    StackTraceElement []stack = thread.getStackTrace();
+
+    // the request may have finished while the stack was taken
+    if (stack.length == 0 || _activeThreads.get(thread) != name)
+      return;
+
+    StringBuilder sb = new StringBuilder();
+    sb.append(name);
+
+    int depth = Math.min(stack.length, _maxDepth);
+
+    // deep stacks keep their root-most frames, so the folded line
+    // starts at the real root, and are marked as truncated
+    for (int i = stack.length - 1; i >= stack.length - depth; i--) {
+      StackTraceElement frame = stack[i];
+
+      sb.append(';');
+      sb.append(frame.getClassName());
+      sb.append('.');
+      sb.append(frame.getMethodName());
+    }
+
+    if (depth < stack.length) {
+      sb.append(';');
+      sb.append(TRUNCATED_FRAME);
+    }
+
+    String key = sb.toString();
+
+    AtomicLong count = _stackCounts.get(key);
+
+    if (count == null) {
+      if (STACK_MAX <= _stackCounts.size())
+        key = name + ";" + OVERFLOW_STACK;
+
+      count = new AtomicLong();
+      AtomicLong oldCount = _stackCounts.putIfAbsent(key, count);
+
+      if (oldCount != null)
+        count = oldCount;
+    }
+
+    count.incrementAndGet();
+    _sampleCountTotal.incrementAndGet();
+  }
+
+  /**
+   * Returns the total number of stack samples.
+   */
+  public long getSampleCountTotal()
+  {
+    return _sampleCountTotal.get();
+  }
+
+  /**
+   * Returns the total time spent sampling in nanoseconds.
+   */
+  public long getSampleTimeTotal()
+  {
+    return _sampleTimeTotal.get();
+  }
+
+  /**
+   * Returns the sampled stacks in the folded flame graph format,
+   * sorted by stack.
+   */
+  public String getFoldedStacks()
+  {
+    ArrayList<String> stacks = new ArrayList<String>(_stackCounts.keySet());
+
+    Collections.sort(stacks);
+
+    StringBuilder sb = new StringBuilder();
+
+    for (String stack : stacks) {
+      AtomicLong count = _stackCounts.get(stack);
+
+      if (count == null)
+        continue;
+
+      sb.append(stack);
+      sb.append(' ');
+      sb.append(count.get());
+      sb.append('\n');
+    }
+
+    return sb.toString();
+  }
+
+  /**
+   * Clears the sampled stacks.
+   */
+  public void reset()
+  {
+    _stackCounts.clear();
+    _sampleCountTotal.set(0);
+    _sampleTimeTotal.set(0);
+  }
+
+  public String toString()
+  {
+    return getClass().getSimpleName() + "[period=" + _period + "ms]";
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 1998-2012 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Resin(R) Open Source
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Resin Open Source is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Resin Open Source is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Resin Open Source; if not, write to the
+ *   Free SoftwareFoundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ *
+ * @author Scott Ferguson
+ */
+
+
+package com.caucho.xsl;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+
+/**
+ * Copies SAX events to an XslWriter, the streaming counterpart of
+ * IdentityStylesheet. Like the DOM identity copy, only elements,
+ * attributes and text are copied, and the XslWriter handles the
+ * output format and namespace bindings the same way for both.
+ */
+class IdentityContentHandler implements ContentHandler {
+  private final XslWriter _out;
+
+  IdentityContentHandler(XslWriter out)
+  {
+    _out = out;
+  }
+
+  public void setDocumentLocator(Locator locator)
+  {
+  }
+
+  public void startDocument()
+  {
+  }
+
+  public void endDocument()
+  {
+  }
+
+  public void startPrefixMapping(String prefix, String uri)
+  {
+  }
+
+  public void endPrefixMapping(String prefix)
+  {
+  }
+
+  public void startElement(String uri, String localName,
+                           String qName, Attributes attrs)
+    throws SAXException
+  {
+    try {
+      int p = qName.indexOf(':');
+      String prefix = p > 0 ? qName.substring(0, p) : null;
+
+      if (uri != null && uri.equals(""))
+        uri = null;
+
+      _out.pushElement(uri, prefix, localName, qName);
+
+      int length = attrs.getLength();
+
+      for (int i = 0; i < length; i++) {
+        String attrName = attrs.getQName(i);
+        p = attrName.indexOf(':');
+        String attrPrefix = p > 0 ? attrName.substring(0, p) : "";
+
+        // xmlns attributes are rebound by the XslWriter
+        _out.attribute(attrs.getURI(i), attrPrefix, attrs.getLocalName(i),
+                       attrName, attrs.getValue(i));
+      }
+    } catch (IOException e) {
+      throw new SAXException(e);
+    }
+  }
+
+  public void endElement(String uri, String localName, String qName)
+    throws SAXException
+  {
+    try {
+      _out.popElement();
+    } catch (IOException e) {
+      throw new SAXException(e);
+    }
+  }
+
+  public void characters(char []buffer, int offset, int length)
+  {
+    _out.write(buffer, offset, length);
+  }
+
+  public void ignorableWhitespace(char []buffer, int offset, int length)
+  {
+    characters(buffer, offset, length);
+  }
+
+  public void processingInstruction(String target, String data)
+  {
+  }
+
+  public void skippedEntity(String name)
+  {
+  }
+}
@@ -288,13 +288,24 @@ public class TransformerImpl extends javax.xml.transform.Transformer {
     throws TransformerException
   {
     try {
-      Node node = parseDocument(source);
+      Node node = null;
+      StreamSource streamSource = null;
+
+      // the identity transform streams without building the source DOM
+      if (_stylesheet instanceof IdentityStylesheet
+          && source instanceof StreamSource
+          && result instanceof StreamResult) {
+        streamSource = (StreamSource) source;
+      }
+      else
+        node = parseDocument(source);
       
       if (result instanceof StreamResult) {
         StreamResult stream = (StreamResult) result;
 
         if (stream.getOutputStream() != null)
-          transform(node, stream.getOutputStream(), null, result.getSystemId());
+          transform(node, streamSource, stream.getOutputStream(),
+                    null, result.getSystemId());
         else if (stream.getWriter() != null) {
           Writer writer = stream.getWriter();
           WriteStream os = Vfs.openWrite(writer);
@@ -302,10 +313,11 @@ public class TransformerImpl extends javax.xml.transform.Transformer {
           if (writer instanceof OutputStreamWriter) {
             String javaEncoding = ((OutputStreamWriter) writer).getEncoding();
             String mimeEncoding = Encoding.getMimeName(javaEncoding);
-            transform(node, os, mimeEncoding, result.getSystemId());
+            transform(node, streamSource, os,
+                      mimeEncoding, result.getSystemId());
           }
           else
-            transform(node, os, null, result.getSystemId());
+            transform(node, streamSource, os, null, result.getSystemId());
 
           os.flush();
           os.free();
@@ -314,7 +326,7 @@ public class TransformerImpl extends javax.xml.transform.Transformer {
           WriteStream os = Vfs.lookup(result.getSystemId()).openWrite();
             
           try {
-            transform(node, os, null, result.getSystemId());
+            transform(node, streamSource, os, null, result.getSystemId());
           } finally {
             os.close();
           }
@@ -367,6 +379,18 @@ public class TransformerImpl extends javax.xml.transform.Transformer {
     if (node == null)
       throw new IllegalArgumentException("can't transform null node");
 
+    transform(node, null, os, encoding, systemId);
+  }
+
+  /**
+   * Transforms from a DOM node, or from a streamed source for the
+   * identity transform, to an output stream.
+   */
+  private void transform(Node node, StreamSource streamSource,
+                         OutputStream os,
+                         String encoding, String systemId)
+    throws TransformerException
+  {
     try {
       _lineMap = null;
       Properties output = getOutputProperties();
@@ -437,7 +461,10 @@ public class TransformerImpl extends javax.xml.transform.Transformer {
         out.setLineMap("anonymous.xsl");
 
       //out.beginDocument();
-      _stylesheet.transform(node, out, this);
+      if (node != null)
+        _stylesheet.transform(node, out, this);
+      else
+        transformIdentity(streamSource, out);
       //out.endDocument();
       _lineMap = out.getLineMap();
       if (os != ws) {
@@ -451,6 +478,37 @@ public class TransformerImpl extends javax.xml.transform.Transformer {
     }
   }
 
+  /**
+   * Copies the parsed source through an XslWriter to the printer, so the
+   * identity transform of a large document doesn't need the document in
+   * memory.
+   */
+  private void transformIdentity(StreamSource stream, XMLWriter out)
+    throws IOException, SAXException
+  {
+    InputSource in = new InputSource();
+    in.setSystemId(stream.getSystemId());
+    in.setByteStream(stream.getInputStream());
+    in.setCharacterStream(stream.getReader());
+
+    XslWriter xslOut = new XslWriter(null, _stylesheet, this);
+    xslOut.init(out);
+
+    XmlParser parser = Xml.create();
+
+    try {
+      // xmlns attributes are passed to the XslWriter, which binds them
+      parser.setNamespacePrefixes(true);
+      parser.setContentHandler(new IdentityContentHandler(xslOut));
+
+      parser.parse(in);
+    } finally {
+      parser.free();
+    }
+
+    xslOut.close();
+  }
+
   /**
    * Transforms from the source node to the destination node, returning
    * the destination node.
@@ -35,6 +35,7 @@ import java.beans.IntrospectionException;
 import java.beans.Introspector;
 import java.beans.PropertyDescriptor;
 import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
@@ -53,6 +54,15 @@ public class BeanELResolver extends ELResolver {
     = new WeakHashMap<Class<?>,SoftReference<BeanProperties>>();
   
   private final boolean _isReadOnly;
+
+  private static final int PROPS_CACHE_SIZE = 8;
+
+  // small inline cache keyed on the receiver class's identity hash.
+  // It's weak since resolvers can be static, and it would otherwise pin
+  // a redeployed web-app's class loader. A racy read is only a miss.
+  @SuppressWarnings("unchecked")
+  private final WeakReference<BeanProperties> []_propsCache
+    = new WeakReference[PROPS_CACHE_SIZE];
   
   public BeanELResolver()
   {
@@ -80,19 +90,10 @@ public class BeanELResolver extends ELResolver {
     if (base == null)
       return null;
 
-    Class<?> cl = base.getClass();
-    BeanProperties props = getProps(cl);
-
-    if (props == null) {
-      if (cl.isArray()
-          || Collection.class.isAssignableFrom(cl)
-          || Map.class.isAssignableFrom(cl)) {
-        return null;
-      }
+    BeanProperties props = lookupProps(base.getClass());
 
-      props = new BeanProperties(cl);
-      setProps(cl, props);
-    }
+    if (props == null)
+      return null;
 
     ArrayList<FeatureDescriptor> descriptors
       = new ArrayList<FeatureDescriptor>();
@@ -129,19 +130,10 @@ public class BeanELResolver extends ELResolver {
     if (fieldName.length() == 0)
       return null;
 
-    Class<?> cl = base.getClass();
-    BeanProperties props = getProps(cl);
+    BeanProperties props = lookupProps(base.getClass());
 
-    if (props == null) {
-      if (cl.isArray()
-          || Collection.class.isAssignableFrom(cl)
-          || Map.class.isAssignableFrom(cl)) {
-        return null;
-      }
-
-      props = new BeanProperties(cl);
-      setProps(cl, props);
-    }
+    if (props == null)
+      return null;
 
     BeanProperty prop = props.getBeanProperty(fieldName);
 
@@ -178,19 +170,10 @@ public class BeanELResolver extends ELResolver {
       return null;
     }
     
-    Class<?> cl = base.getClass();
-    BeanProperties props = getProps(cl);
-
-    if (props == null) {
-      if (cl.isArray()
-          || Collection.class.isAssignableFrom(cl)
-          || Map.class.isAssignableFrom(cl)) {
-        return null;
-      }
+    BeanProperties props = lookupProps(base.getClass());
 
-      props = new BeanProperties(cl);
-      setProps(cl, props);
-    }
+    if (props == null)
+      return null;
 
     BeanProperty prop = props.getBeanProperty(fieldName);
 
@@ -248,19 +231,10 @@ public class BeanELResolver extends ELResolver {
     if (fieldName.length() == 0)
       return;
 
-    Class<?> cl = base.getClass();
-    BeanProperties props = getProps(cl);
-
-    if (props == null) {
-      if (cl.isArray()
-          || Collection.class.isAssignableFrom(cl)
-          || Map.class.isAssignableFrom(cl)) {
-        return;
-      }
+    BeanProperties props = lookupProps(base.getClass());
 
-      props = new BeanProperties(cl);
-      setProps(cl, props);
-    }
+    if (props == null)
+      return;
 
     BeanProperty prop = props.getBeanProperty(fieldName);
 
@@ -344,8 +318,30 @@ public class BeanELResolver extends ELResolver {
     if (fieldName.length() == 0)
       return null;
 
-    Class<?> cl = base.getClass();
-    BeanProperties props = getProps(cl);
+    return lookupProps(base.getClass());
+  }
+
+  /**
+   * Returns the bean properties for the class, checking the resolver's
+   * recently-used classes before the shared class map. Pages typically
+   * evaluate many properties against a few bean classes, so the inline
+   * cache avoids the synchronized map lookup on the common path.
+   */
+  private BeanProperties lookupProps(Class<?> cl)
+  {
+    int hash = System.identityHashCode(cl) & (PROPS_CACHE_SIZE - 1);
+
+    WeakReference<BeanProperties> propsRef = _propsCache[hash];
+
+    BeanProperties props = null;
+
+    if (propsRef != null)
+      props = propsRef.get();
+
+    if (props != null && props.getBaseClass() == cl)
+      return props;
+
+    props = getProps(cl);
 
     if (props == null) {
       if (cl.isArray()
@@ -358,6 +354,9 @@ public class BeanELResolver extends ELResolver {
       setProps(cl, props);
     }
 
+    // the slot is only replaced on a miss, i.e. when its class changes
+    _propsCache[hash] = new WeakReference<BeanProperties>(props);
+
     return props;
   }
 
@@ -382,11 +381,15 @@ public class BeanELResolver extends ELResolver {
 
   protected static final class BeanProperties
   {
+    private final Class<?> _baseClass;
+    
     private HashMap<String,BeanProperty> _propMap
       = new HashMap<String,BeanProperty>();
     
     public BeanProperties(Class<?> baseClass)
     {
+      _baseClass = baseClass;
+      
       try {
         BeanInfo info = Introspector.getBeanInfo(baseClass);
 
@@ -444,6 +447,11 @@ public class BeanELResolver extends ELResolver {
     }
     
 
+    Class<?> getBaseClass()
+    {
+      return _baseClass;
+    }
+
     public BeanProperty getBeanProperty(String property)
     {
       return _propMap.get(property);